@@ -0,0 +1,60 @@
+package com.seft.learn.example.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of filling a part in pooled chunks and handing it off: one operation writes
+ * {@link #PART_SIZE} bytes in 64 KB writes, detaches the part, reads its buffers the
+ * way an upload would, and returns the chunks to the pool. Several threads share one
+ * {@link PartBufferPool} as concurrent exports do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(4)
+public class PartBufferBenchmark {
+
+    static final int PART_SIZE = 8 * 1024 * 1024;
+    static final int WRITE_SIZE = 64 * 1024;
+
+    @Param({"256", "1024"})
+    public int chunkSizeKb = 1024;
+
+    private PartBufferPool pool;
+    private byte[] block;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        pool = new PartBufferPool(256, chunkSizeKb);
+        block = new byte[WRITE_SIZE];
+        ThreadLocalRandom.current().nextBytes(block);
+    }
+
+    @Benchmark
+    public void fillAndHandOff(Blackhole blackhole) throws IOException {
+        PartBuffer buffer = new PartBuffer(pool);
+        for (int written = 0; written < PART_SIZE; written += WRITE_SIZE) {
+            buffer.write(block, 0, WRITE_SIZE);
+        }
+        PartBuffer.Part part = buffer.detach();
+        for (ByteBuffer view : part.byteBuffers()) {
+            blackhole.consume(view.remaining());
+        }
+        part.release();
+    }
+}
@@ -0,0 +1,92 @@
+package com.seft.learn.example.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+import java.lang.reflect.Field;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Signing cost of {@link S3PresignedUrlService}. Signing is local, so the clients are
+ * configured as in {@code S3Config} against an endpoint that is never contacted.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class PresignBenchmark {
+
+    private static final String ENDPOINT = "http://localhost:4566";
+    private static final String REGION = "ap-southeast-1";
+    private static final String ACCESS_KEY = "test";
+    private static final String SECRET_KEY = "test";
+
+    private S3Client s3Client;
+    private S3Presigner s3Presigner;
+    private S3PresignedUrlService service;
+
+    @Setup(Level.Trial)
+    public void setUp() throws ReflectiveOperationException {
+        StaticCredentialsProvider credentials = StaticCredentialsProvider.create(
+                AwsBasicCredentials.create(ACCESS_KEY, SECRET_KEY));
+        s3Client = S3Client.builder()
+                .endpointOverride(URI.create(ENDPOINT))
+                .region(Region.of(REGION))
+                .credentialsProvider(credentials)
+                .forcePathStyle(true)
+                .build();
+        s3Presigner = S3Presigner.builder()
+                .endpointOverride(URI.create(ENDPOINT))
+                .region(Region.of(REGION))
+                .credentialsProvider(credentials)
+                .serviceConfiguration(S3Configuration.builder().pathStyleAccessEnabled(true).build())
+                .build();
+        service = new S3PresignedUrlService(s3Client, s3Presigner);
+        // @Value fields, normally injected by Spring
+        set("bucketName", "bench-bucket");
+        set("endpoint", ENDPOINT);
+        set("region", REGION);
+        set("accessKey", ACCESS_KEY);
+        set("secretKey", SECRET_KEY);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        s3Presigner.close();
+        s3Client.close();
+    }
+
+    @Benchmark
+    public String presignGet() {
+        return service.generatePresignedGetUrl("exports/users_export_bench.csv.gz");
+    }
+
+    @Benchmark
+    public String presignPut() {
+        return service.generatePresignedPutUrl("uploads/bench.pdf", "application/pdf", 1024 * 1024);
+    }
+
+    @Benchmark
+    public S3PresignedUrlService.PresignedPostResult presignPost() {
+        return service.generatePresignedPostUrl("uploads/bench.pdf", "application/pdf");
+    }
+
+    private void set(String field, String value) throws ReflectiveOperationException {
+        Field f = S3PresignedUrlService.class.getDeclaredField(field);
+        f.setAccessible(true);
+        f.set(service, value);
+    }
+}
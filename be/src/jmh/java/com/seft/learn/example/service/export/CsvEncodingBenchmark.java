@@ -0,0 +1,61 @@
+package com.seft.learn.example.service.export;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rows per second of the byte-level {@link CsvRowEncoder} against the String-based
+ * {@link CsvFormatter} it replaced, per dataset. Run with the {@code gc} profiler (the
+ * {@code jmh} task does) to compare {@code gc.alloc.rate.norm}, bytes allocated per row.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CsvEncodingBenchmark {
+
+    @Param({"plain", "quotes", "unicode"})
+    public String dataset = "plain";
+
+    private UserRows rows;
+    private ResultSet rs;
+    private CsvRowEncoder encoder;
+    private CsvFormatter formatter;
+    private ExportSink sink;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        rows = new UserRows(dataset);
+        rs = rows.resultSet();
+        encoder = new CsvRowEncoder(UserQuery.ALL);
+        formatter = new CsvFormatter();
+        sink = (data, offset, length) -> blackhole.consume(data);
+    }
+
+    @Benchmark
+    public void rowEncoder() throws SQLException, IOException {
+        rows.next();
+        encoder.encodeRow(rs);
+        if (encoder.isFull()) {
+            encoder.drainTo(sink);
+        }
+    }
+
+    @Benchmark
+    public byte[] stringFormatter() throws SQLException {
+        rows.next();
+        return (formatter.formatRow(rs) + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -3,6 +3,10 @@ package com.seft.learn.example.service.export;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 
+/**
+ * String-based CSV formatter the export used before {@link CsvRowEncoder}, kept as the
+ * baseline of {@link CsvEncodingBenchmark}.
+ */
 public class CsvFormatter {
 
     private static final String[] HEADERS = {"id", "email", "name", "created_at"};
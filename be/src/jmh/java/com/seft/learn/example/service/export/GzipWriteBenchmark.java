@@ -0,0 +1,93 @@
+package com.seft.learn.example.service.export;
+
+import com.seft.learn.example.service.compression.ParallelGzipOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.SQLException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Encoder plus gzip throughput at different deflate levels. One operation encodes and
+ * compresses a batch of {@link #BATCH_ROWS} rows; the {@code parallel} variant runs the
+ * same stream through {@link ParallelGzipOutputStream} (fixed at the default level).
+ * Compressed bytes are discarded, so only CPU and allocation are measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class GzipWriteBenchmark {
+
+    static final int BATCH_ROWS = 1024;
+
+    @Param({"plain", "unicode"})
+    public String dataset = "plain";
+
+    @Param({"1", "6", "9"})
+    public int level = 6;
+
+    private UserRows rows;
+    private CsvRowEncoder encoder;
+    private ExecutorService executor;
+    private GZIPOutputStream gzip;
+    private ParallelGzipOutputStream parallelGzip;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        rows = new UserRows(dataset);
+        encoder = new CsvRowEncoder(UserQuery.ALL);
+        executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        gzip = new LevelGzipOutputStream(OutputStream.nullOutputStream(), level);
+        parallelGzip = new ParallelGzipOutputStream(OutputStream.nullOutputStream(), executor,
+                ParallelGzipOutputStream.DEFAULT_BLOCK_SIZE, Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        gzip.close();
+        parallelGzip.close();
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public void gzip() throws SQLException, IOException {
+        encodeBatch(gzip);
+    }
+
+    @Benchmark
+    public void parallel() throws SQLException, IOException {
+        encodeBatch(parallelGzip);
+    }
+
+    private void encodeBatch(OutputStream out) throws SQLException, IOException {
+        for (int i = 0; i < BATCH_ROWS; i++) {
+            rows.next();
+            encoder.encodeRow(rows.resultSet());
+            if (encoder.isFull()) {
+                encoder.drainTo(out::write);
+            }
+        }
+        encoder.drainTo(out::write);
+    }
+
+    private static final class LevelGzipOutputStream extends GZIPOutputStream {
+
+        LevelGzipOutputStream(OutputStream out, int level) throws IOException {
+            super(out, 64 * 1024);
+            def.setLevel(level);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.seft.learn.example.service.export;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * In-memory users rows behind a {@link ResultSet}, so encoders can be measured without
+ * a database. Values are pre-built per row; the proxy only hands them out, the way the
+ * driver returns already-decoded column values.
+ *
+ * <p>Datasets: {@code plain} is short ASCII, {@code quotes} has a quote or comma in
+ * most email and name values, {@code unicode} has multi-byte names.
+ */
+final class UserRows {
+
+    static final int ROWS = 4096;
+
+    private static final String[] UNICODE_NAMES = {
+            "Nguyễn Văn Ánh", "Trần Thị Thu Hà", "Müller-Lüdenscheidt", "山田 太郎", "Σωκράτης Παππάς"};
+
+    private final long[] ids = new long[ROWS];
+    private final String[] emails = new String[ROWS];
+    private final String[] names = new String[ROWS];
+    private final String[] createdAts = new String[ROWS];
+    private final byte[][] emailBytes = new byte[ROWS][];
+    private final byte[][] nameBytes = new byte[ROWS][];
+    private final ResultSet resultSet;
+    private int row;
+
+    UserRows(String dataset) {
+        Instant base = Instant.parse("2024-01-01T00:00:00Z");
+        for (int i = 0; i < ROWS; i++) {
+            ids[i] = 1_000_000L + i;
+            switch (dataset) {
+                case "plain" -> {
+                    emails[i] = "user" + i + "@example.com";
+                    names[i] = "User " + i;
+                }
+                case "quotes" -> {
+                    emails[i] = "\"user" + i + "\"@example.com";
+                    names[i] = "Smith, John \"Johnny\" " + i;
+                }
+                case "unicode" -> {
+                    emails[i] = "người.dùng" + i + "@ví-dụ.vn";
+                    names[i] = UNICODE_NAMES[i % UNICODE_NAMES.length] + " " + i;
+                }
+                default -> throw new IllegalArgumentException("Unknown dataset: " + dataset);
+            }
+            createdAts[i] = base.plus(i * 37L, ChronoUnit.SECONDS).toString().replace('T', ' ').replace("Z", "");
+            emailBytes[i] = emails[i].getBytes(StandardCharsets.UTF_8);
+            nameBytes[i] = names[i].getBytes(StandardCharsets.UTF_8);
+        }
+        resultSet = (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "getLong" -> ids[row];
+                    case "getBytes" -> (int) args[0] == 2 ? emailBytes[row] : nameBytes[row];
+                    case "getString" -> args[0] instanceof Integer index ? stringAt(index) : stringAt(label((String) args[0]));
+                    case "wasNull" -> false;
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    ResultSet resultSet() {
+        return resultSet;
+    }
+
+    /**
+     * Moves the result set to the next row, wrapping around after the last one.
+     */
+    void next() {
+        row = (row + 1) % ROWS;
+    }
+
+    private String stringAt(int index) {
+        return switch (index) {
+            case 1 -> Long.toString(ids[row]);
+            case 2 -> emails[row];
+            case 3 -> names[row];
+            default -> createdAts[row];
+        };
+    }
+
+    // UserQuery.ALL puts id, email, name, created_at at 1..4
+    private static int label(String column) {
+        return switch (column) {
+            case "id" -> 1;
+            case "email" -> 2;
+            case "name" -> 3;
+            default -> 4;
+        };
+    }
+}
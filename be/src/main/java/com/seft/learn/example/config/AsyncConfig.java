@@ -1,5 +1,6 @@
 package com.seft.learn.example.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableAsync;
@@ -11,6 +12,21 @@ import java.util.concurrent.Executor;
 @EnableAsync
 public class AsyncConfig {
 
+	@Value("${export.parallel.workers:4}")
+	private int partitionWorkers = 4;
+
+	@Value("${export.compression.threads:0}")
+	private int compressionThreads = 0;
+
+	@Value("${export.upload.max-in-flight:16}")
+	private int uploadThreads = 16;
+
+	@Value("${export.direct.max-concurrent:4}")
+	private int directStreams = 4;
+
+	@Value("${export.count.max-concurrent:2}")
+	private int countThreads = 2;
+
 	@Bean(name = "taskExecutor")
 	public Executor taskExecutor() {
 		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
@@ -22,4 +38,94 @@ public class AsyncConfig {
 		executor.initialize();
 		return executor;
 	}
+
+	@Bean(name = "exportStageExecutor")
+	public Executor exportStageExecutor() {
+		// One compress/upload stage thread per running export; never queue, a queued
+		// stage would leave its producer blocked forever
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(2);
+		executor.setMaxPoolSize(16);
+		executor.setQueueCapacity(0);
+		executor.setThreadNamePrefix("export-stage-");
+		executor.setTaskDecorator(new MdcTaskDecorator());
+		executor.initialize();
+		return executor;
+	}
+
+	@Bean(name = "exportCompressionExecutor")
+	public Executor exportCompressionExecutor() {
+		// Shared by all uploads; each upload bounds its own blocks in flight
+		int threads = compressionThreads > 0 ? compressionThreads : Runtime.getRuntime().availableProcessors();
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(threads);
+		executor.setMaxPoolSize(threads);
+		executor.setThreadNamePrefix("export-gzip-");
+		executor.initialize();
+		return executor;
+	}
+
+	@Bean(name = "exportUploadExecutor")
+	public Executor exportUploadExecutor() {
+		// Runs the blocking part uploads of the sync backend; PartUploadScheduler never has more
+		// parts in flight than threads
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(Math.max(uploadThreads, 1));
+		executor.setMaxPoolSize(Math.max(uploadThreads, 1));
+		executor.setThreadNamePrefix("export-upload-");
+		executor.setTaskDecorator(new MdcTaskDecorator());
+		executor.initialize();
+		return executor;
+	}
+
+	@Bean(name = "exportFileExecutor")
+	public Executor exportFileExecutor() {
+		// Completes the files of split exports in the background: waits for a file's last
+		// parts and completes its multipart upload while the export writes the next file
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(4);
+		executor.setMaxPoolSize(4);
+		executor.setThreadNamePrefix("export-file-");
+		executor.setTaskDecorator(new MdcTaskDecorator());
+		executor.initialize();
+		return executor;
+	}
+
+	@Bean(name = "exportCountExecutor")
+	public ThreadPoolTaskExecutor exportCountExecutor() {
+		// Exact row counts next to running exports; kept off taskExecutor, where a count would
+		// queue behind the exports it is meant to run alongside
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(Math.max(countThreads, 1));
+		executor.setMaxPoolSize(Math.max(countThreads, 1));
+		executor.setQueueCapacity(0);
+		executor.setThreadNamePrefix("export-count-");
+		executor.setTaskDecorator(new MdcTaskDecorator());
+		executor.initialize();
+		return executor;
+	}
+
+	@Bean(name = "exportDirectExecutor")
+	public ThreadPoolTaskExecutor exportDirectExecutor() {
+		// Runs direct download responses; each holds a JDBC connection while it streams
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(Math.max(directStreams, 1));
+		executor.setMaxPoolSize(Math.max(directStreams, 1));
+		executor.setQueueCapacity(Math.max(directStreams, 1) * 4);
+		executor.setThreadNamePrefix("export-direct-");
+		executor.setTaskDecorator(new MdcTaskDecorator());
+		executor.initialize();
+		return executor;
+	}
+
+	@Bean(name = "exportPartitionExecutor")
+	public Executor exportPartitionExecutor() {
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(Math.max(partitionWorkers, 1));
+		executor.setMaxPoolSize(Math.max(partitionWorkers, 1));
+		executor.setThreadNamePrefix("export-partition-");
+		executor.setTaskDecorator(new MdcTaskDecorator());
+		executor.initialize();
+		return executor;
+	}
 }
@@ -1,12 +1,25 @@
 package com.seft.learn.example.config;
 
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
 
+	private final ThreadPoolTaskExecutor directExecutor;
+
+	@Value("${export.direct.max-duration-ms:120000}")
+	private long directMaxDurationMs = 120_000;
+
+	public WebConfig(@Qualifier("exportDirectExecutor") ThreadPoolTaskExecutor directExecutor) {
+		this.directExecutor = directExecutor;
+	}
+
 	@Override
 	public void addCorsMappings(CorsRegistry registry) {
 		registry.addMapping("/api/**")
@@ -14,4 +27,12 @@ public class WebConfig implements WebMvcConfigurer {
 				.allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS")
 				.allowedHeaders("*");
 	}
+
+	@Override
+	public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+		// Streaming responses (direct downloads) run on a bounded pool and may take up to
+		// the direct download time cap; SSE streams set their own timeout
+		configurer.setTaskExecutor(directExecutor);
+		configurer.setDefaultTimeout(directMaxDurationMs + 30_000);
+	}
 }
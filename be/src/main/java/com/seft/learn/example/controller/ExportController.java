@@ -1,13 +1,26 @@
 package com.seft.learn.example.controller;
 
+import com.seft.learn.example.dto.ExportDownloadResponse;
+import com.seft.learn.example.dto.ExportJobResponse;
+import com.seft.learn.example.dto.ExportManifest;
+import com.seft.learn.example.dto.ExportRequest;
 import com.seft.learn.example.entity.ExportJob;
+import com.seft.learn.example.service.ExportEventHub;
 import com.seft.learn.example.service.ExportService;
-import java.time.Instant;
+import com.seft.learn.example.service.S3StreamingUploader;
+import com.seft.learn.example.service.export.DirectExport;
+import com.seft.learn.example.service.export.StartedExport;
 import lombok.RequiredArgsConstructor;
 import org.jspecify.annotations.Nullable;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.util.Locale;
 import java.util.Map;
 import java.util.UUID;
 
@@ -18,17 +31,90 @@ import java.util.UUID;
 public class ExportController {
 
     private final ExportService exportService;
+    private final ExportEventHub eventHub;
 
+    /**
+     * @param format      {@code csv} or {@code parquet}
+     * @param compression {@code gzip} (CSV default), {@code zstd}, {@code lz4} or {@code none}
+     * @param since       base export id or ISO-8601 timestamp; exports only users added since then
+     * @param columns     comma-separated columns to export, e.g. {@code id,email}; all by default
+     * @param createdFrom ISO-8601 timestamp; only users created at or after it
+     * @param createdTo   ISO-8601 timestamp; only users created before it
+     * @param idFrom      lowest user id to export
+     * @param idTo        highest user id to export
+     */
     @PostMapping("/users")
-    public ResponseEntity<Map<String, Object>> startExport() {
-        UUID jobId = exportService.startExport();
+    public ResponseEntity<Map<String, Object>> startExport(
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(required = false) @Nullable String compression,
+            @RequestParam(required = false) @Nullable String since,
+            @RequestParam(required = false) @Nullable String columns,
+            @RequestParam(required = false) @Nullable String createdFrom,
+            @RequestParam(required = false) @Nullable String createdTo,
+            @RequestParam(required = false) @Nullable Long idFrom,
+            @RequestParam(required = false) @Nullable Long idTo) {
+        StartedExport started = exportService.startExport(new ExportRequest(
+                ExportJob.ExportFormat.valueOf(format.toUpperCase(Locale.ROOT)),
+                compression != null ? ExportJob.Compression.valueOf(compression.toUpperCase(Locale.ROOT)) : null,
+                since,
+                columns,
+                createdFrom,
+                createdTo,
+                idFrom,
+                idTo));
+        UUID jobId = started.jobId();
         return ResponseEntity.accepted().body(Map.of(
                 "jobId", jobId,
-                "message", "Export started",
-                "statusUrl", "/exports/" + jobId
+                "reused", started.reused(),
+                "message", started.reused() ? "Reused export"
+                        : since != null ? "Delta export started" : "Export started",
+                "statusUrl", "/exports/" + jobId,
+                "manifest", exportService.getManifest(jobId)
         ));
     }
 
+    /**
+     * Streams a CSV export straight into the response instead of staging it on S3. Takes
+     * the column and filter parameters of {@code POST /users}; refused with 422 when the
+     * export is expected to exceed {@code export.direct.max-rows}.
+     *
+     * @param compression {@code gzip} (default), {@code zstd}, {@code lz4} or {@code none}
+     */
+    @GetMapping("/users/stream")
+    public ResponseEntity<StreamingResponseBody> streamExport(
+            @RequestParam(required = false) @Nullable String compression,
+            @RequestParam(required = false) @Nullable String columns,
+            @RequestParam(required = false) @Nullable String createdFrom,
+            @RequestParam(required = false) @Nullable String createdTo,
+            @RequestParam(required = false) @Nullable Long idFrom,
+            @RequestParam(required = false) @Nullable Long idTo) {
+        DirectExport export = exportService.prepareDirectExport(new ExportRequest(
+                ExportJob.ExportFormat.CSV,
+                compression != null ? ExportJob.Compression.valueOf(compression.toUpperCase(Locale.ROOT)) : null,
+                null,
+                columns,
+                createdFrom,
+                createdTo,
+                idFrom,
+                idTo));
+        StreamingResponseBody body = out -> exportService.streamDirect(export, out);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(export.fileName()).build().toString())
+                .contentType(export.compression() == ExportJob.Compression.NONE
+                        ? MediaType.parseMediaType(S3StreamingUploader.CSV_CONTENT_TYPE)
+                        : MediaType.APPLICATION_OCTET_STREAM)
+                .body(body);
+    }
+
+    @GetMapping("/{jobId}/manifest")
+    public ResponseEntity<ExportManifest> getManifest(@PathVariable UUID jobId) {
+        if (exportService.getJob(jobId) == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(exportService.getManifest(jobId));
+    }
+
     @GetMapping("/{jobId}")
     public ResponseEntity<ExportJobResponse> getStatus(@PathVariable UUID jobId) {
         ExportJob job = exportService.getJob(jobId);
@@ -38,105 +124,47 @@ public class ExportController {
         return ResponseEntity.ok(ExportJobResponse.from(job));
     }
 
-    @GetMapping("/{jobId}/download-url")
-    public ResponseEntity<Map<String, String>> getDownloadUrl(@PathVariable UUID jobId) {
-        try {
-            String url = exportService.getDownloadUrl(jobId);
-            return ResponseEntity.ok(Map.of("downloadUrl", url));
-        } catch (IllegalStateException e) {
-            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+    /**
+     * Server-sent events for the job: {@code status} (an {@link ExportJobResponse}) on
+     * connect and on each state change, {@code progress} while it runs. Replaces polling
+     * {@code GET /exports/{jobId}}.
+     */
+    @GetMapping(path = "/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> events(@PathVariable UUID jobId) {
+        SseEmitter emitter = eventHub.subscribe(jobId);
+        if (emitter == null) {
+            return ResponseEntity.notFound().build();
         }
+        return ResponseEntity.ok(emitter);
     }
 
-    public record ExportJobResponse(
-            UUID id,
-            String status,
-            @Nullable Long totalRecords,
-            @Nullable Long processedRecords,
-            @Nullable Integer progressPercent,
-            @Nullable String s3Key,
-            @Nullable String errorMessage,
-            String createdAt,
-            @Nullable String startedAt,
-            @Nullable String finishedAt,
-            // Metrics
-            @Nullable Long fileSizeBytes,
-            @Nullable String fileSizeFormatted,
-            @Nullable Long uncompressedSizeBytes,
-            @Nullable String uncompressedSizeFormatted,
-            @Nullable Double compressionPercent,
-            @Nullable Double rowsPerSecond,
-            @Nullable Long durationMs,
-            @Nullable String durationFormatted
-    ) {
-        public static ExportJobResponse from(ExportJob job) {
-            Integer percent = calculatePercent(job);
-            Double compression = calculateCompression(job);
-            
-            return new ExportJobResponse(
-                    job.getId(),
-                    job.getStatus().name(),
-                    job.getTotalRecords(),
-                    job.getProcessedRecords(),
-                    percent,
-                    job.getS3Key(),
-                    job.getErrorMessage(),
-                    formatInstant(job.getCreatedAt()),
-                    formatNullableInstant(job.getStartedAt()),
-                    formatNullableInstant(job.getFinishedAt()),
-                    job.getFileSizeBytes(),
-                    formatFileSize(job.getFileSizeBytes()),
-                    job.getUncompressedSizeBytes(),
-                    formatFileSize(job.getUncompressedSizeBytes()),
-                    compression,
-                    job.getRowsPerSecond(),
-                    job.getDurationMs(),
-                    formatDuration(job.getDurationMs())
-            );
-        }
-
-        private static @Nullable Integer calculatePercent(ExportJob job) {
-            if (job.getTotalRecords() != null && job.getTotalRecords() > 0 && job.getProcessedRecords() != null) {
-                return (int) (job.getProcessedRecords() * 100 / job.getTotalRecords());
-            }
-            return null;
-        }
-
-        private static @Nullable Double calculateCompression(ExportJob job) {
-            if (job.getUncompressedSizeBytes() != null && job.getUncompressedSizeBytes() > 0
-                    && job.getFileSizeBytes() != null) {
-                return (1 - (double) job.getFileSizeBytes() / job.getUncompressedSizeBytes()) * 100;
-            }
-            return null;
-        }
-
-        private static String formatInstant(Instant instant) {
-            return instant.toString();
-        }
-
-        private static @Nullable String formatNullableInstant(@Nullable Instant instant) {
-            return instant != null ? instant.toString() : null;
+    @PostMapping("/{jobId}/retry")
+    public ResponseEntity<Map<String, Object>> retryExport(@PathVariable UUID jobId) {
+        if (exportService.getJob(jobId) == null) {
+            return ResponseEntity.notFound().build();
         }
-
-        private static @Nullable String formatFileSize(@Nullable Long bytes) {
-            if (bytes == null) return null;
-            if (bytes >= 1024 * 1024) {
-                return String.format("%.2f MB", bytes / (1024.0 * 1024));
-            }
-            if (bytes >= 1024) {
-                return String.format("%.2f KB", bytes / 1024.0);
-            }
-            return bytes + " B";
+        try {
+            exportService.retryExport(jobId);
+            return ResponseEntity.accepted().body(Map.of(
+                    "jobId", jobId,
+                    "message", "Export retry started",
+                    "statusUrl", "/exports/" + jobId
+            ));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         }
+    }
 
-        private static @Nullable String formatDuration(@Nullable Long ms) {
-            if (ms == null) return null;
-            long seconds = ms / 1000;
-            long minutes = seconds / 60;
-            if (minutes > 0) {
-                return String.format("%dm %ds", minutes, seconds % 60);
-            }
-            return String.format("%ds", seconds);
+    /**
+     * Presigned URLs of the export's files; a split export also links its manifest.
+     */
+    @GetMapping("/{jobId}/download-url")
+    public ResponseEntity<?> getDownloadUrl(@PathVariable UUID jobId) {
+        try {
+            ExportDownloadResponse download = exportService.getDownloadUrls(jobId);
+            return ResponseEntity.ok(download);
+        } catch (IllegalStateException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         }
     }
 }
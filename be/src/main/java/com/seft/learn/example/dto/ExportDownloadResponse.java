@@ -0,0 +1,27 @@
+package com.seft.learn.example.dto;
+
+import org.jspecify.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * Presigned download links of a completed export.
+ *
+ * @param downloadUrl the export's object, or its {@code manifest.json} when it is split into files
+ * @param manifestUrl the manifest of a split export, {@code null} for a single object
+ * @param files       every file holding rows, in id order
+ */
+public record ExportDownloadResponse(
+        String downloadUrl,
+        @Nullable String manifestUrl,
+        List<File> files
+) {
+
+    public record File(
+            String s3Key,
+            String url,
+            long rows,
+            long sizeBytes
+    ) {
+    }
+}
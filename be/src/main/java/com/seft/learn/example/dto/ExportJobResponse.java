@@ -0,0 +1,119 @@
+package com.seft.learn.example.dto;
+
+import com.seft.learn.example.entity.ExportJob;
+import org.jspecify.annotations.Nullable;
+
+import java.time.Instant;
+import java.util.UUID;
+
+public record ExportJobResponse(
+        UUID id,
+        String status,
+        @Nullable String exportType,
+        @Nullable UUID baseJobId,
+        @Nullable String format,
+        @Nullable String compression,
+        @Nullable String queryMode,
+        @Nullable String columns,
+        @Nullable Long totalRecords,
+        boolean totalRecordsEstimated,
+        @Nullable Long processedRecords,
+        @Nullable Integer progressPercent,
+        @Nullable String s3Key,
+        @Nullable Integer fileCount,
+        @Nullable String errorMessage,
+        String createdAt,
+        @Nullable String startedAt,
+        @Nullable String finishedAt,
+        // Metrics
+        @Nullable Long fileSizeBytes,
+        @Nullable String fileSizeFormatted,
+        @Nullable Long uncompressedSizeBytes,
+        @Nullable String uncompressedSizeFormatted,
+        @Nullable Double compressionPercent,
+        @Nullable Double compressionRatio,
+        @Nullable Double rowsPerSecond,
+        @Nullable Long durationMs,
+        @Nullable String durationFormatted
+) {
+    public static ExportJobResponse from(ExportJob job) {
+        Integer percent = calculatePercent(job);
+        Double compression = calculateCompression(job);
+        
+        return new ExportJobResponse(
+                job.getId(),
+                job.getStatus().name(),
+                job.getExportType() != null ? job.getExportType().name() : null,
+                job.getBaseJobId(),
+                job.getFormat() != null ? job.getFormat().name() : null,
+                job.getCompression() != null ? job.getCompression().name() : null,
+                job.getQueryMode() != null ? job.getQueryMode().name() : null,
+                job.getColumns(),
+                job.getTotalRecords(),
+                Boolean.TRUE.equals(job.getTotalRecordsEstimated()),
+                job.getProcessedRecords(),
+                percent,
+                job.getS3Key(),
+                job.getFileCount(),
+                job.getErrorMessage(),
+                formatInstant(job.getCreatedAt()),
+                formatNullableInstant(job.getStartedAt()),
+                formatNullableInstant(job.getFinishedAt()),
+                job.getFileSizeBytes(),
+                formatFileSize(job.getFileSizeBytes()),
+                job.getUncompressedSizeBytes(),
+                formatFileSize(job.getUncompressedSizeBytes()),
+                compression,
+                job.getCompressionRatio(),
+                job.getRowsPerSecond(),
+                job.getDurationMs(),
+                formatDuration(job.getDurationMs())
+        );
+    }
+
+    private static @Nullable Integer calculatePercent(ExportJob job) {
+        if (job.getTotalRecords() != null && job.getTotalRecords() > 0 && job.getProcessedRecords() != null) {
+            int percent = (int) (job.getProcessedRecords() * 100 / job.getTotalRecords());
+            // An estimated total can be overrun; only completion reports 100%
+            return Boolean.TRUE.equals(job.getTotalRecordsEstimated()) ? Math.min(percent, 99) : percent;
+        }
+        return null;
+    }
+
+    private static @Nullable Double calculateCompression(ExportJob job) {
+        if (job.getUncompressedSizeBytes() != null && job.getUncompressedSizeBytes() > 0
+                && job.getFileSizeBytes() != null) {
+            return (1 - (double) job.getFileSizeBytes() / job.getUncompressedSizeBytes()) * 100;
+        }
+        return null;
+    }
+
+    private static String formatInstant(Instant instant) {
+        return instant.toString();
+    }
+
+    private static @Nullable String formatNullableInstant(@Nullable Instant instant) {
+        return instant != null ? instant.toString() : null;
+    }
+
+    private static @Nullable String formatFileSize(@Nullable Long bytes) {
+        if (bytes == null) return null;
+        if (bytes >= 1024 * 1024) {
+            return String.format("%.2f MB", bytes / (1024.0 * 1024));
+        }
+        if (bytes >= 1024) {
+            return String.format("%.2f KB", bytes / 1024.0);
+        }
+        return bytes + " B";
+    }
+
+    private static @Nullable String formatDuration(@Nullable Long ms) {
+        if (ms == null) return null;
+        long seconds = ms / 1000;
+        long minutes = seconds / 60;
+        if (minutes > 0) {
+            return String.format("%dm %ds", minutes, seconds % 60);
+        }
+        return String.format("%ds", seconds);
+    }
+}
@@ -0,0 +1,48 @@
+package com.seft.learn.example.dto;
+
+import org.jspecify.annotations.Nullable;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * What an export contains: the id range it covers and, for delta exports, the base
+ * export it continues. Applying a delta on top of its base yields every user up to
+ * {@code lastId}. A filtered export ({@code idFrom}, {@code idTo}, {@code createdFrom},
+ * {@code createdTo}) holds only the matching users of that range.
+ *
+ * <p>{@code files} lists the objects holding the rows, in id order; an export split into
+ * several files also stores this manifest as {@code s3Key}. Each file is a complete CSV
+ * with its own header, so the files can be read in parallel.
+ */
+public record ExportManifest(
+        UUID jobId,
+        String type,
+        String s3Key,
+        @Nullable UUID baseJobId,
+        @Nullable String baseS3Key,
+        @Nullable String since,
+        @Nullable Long firstId,
+        @Nullable Long lastId,
+        @Nullable String watermarkCreatedAt,
+        String columns,
+        @Nullable Long idFrom,
+        @Nullable Long idTo,
+        @Nullable String createdFrom,
+        @Nullable String createdTo,
+        List<File> files
+) {
+
+    /**
+     * @param minId lowest id in scope covered by the file
+     * @param maxId highest id in scope covered by the file
+     */
+    public record File(
+            String s3Key,
+            long rows,
+            long sizeBytes,
+            @Nullable Long minId,
+            @Nullable Long maxId
+    ) {
+    }
+}
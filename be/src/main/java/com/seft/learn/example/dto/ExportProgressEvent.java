@@ -0,0 +1,14 @@
+package com.seft.learn.example.dto;
+
+import java.util.UUID;
+
+/**
+ * Row progress of a running export, pushed to {@code /exports/{jobId}/events}
+ * subscribers between status events.
+ */
+public record ExportProgressEvent(
+        UUID jobId,
+        long processedRecords,
+        double rowsPerSecond
+) {
+}
@@ -0,0 +1,31 @@
+package com.seft.learn.example.dto;
+
+import com.seft.learn.example.entity.ExportJob.Compression;
+import com.seft.learn.example.entity.ExportJob.ExportFormat;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * What to export. Every scope field is optional; left empty, the export covers every
+ * column of every user.
+ *
+ * @param columns     comma-separated column list, e.g. {@code id,email}
+ * @param createdFrom ISO-8601 lower bound on {@code created_at} (inclusive)
+ * @param createdTo   ISO-8601 upper bound on {@code created_at} (exclusive)
+ * @param idFrom      lowest id to export
+ * @param idTo        highest id to export
+ */
+public record ExportRequest(
+        ExportFormat format,
+        @Nullable Compression compression,
+        @Nullable String since,
+        @Nullable String columns,
+        @Nullable String createdFrom,
+        @Nullable String createdTo,
+        @Nullable Long idFrom,
+        @Nullable Long idTo
+) {
+
+    public static ExportRequest of(ExportFormat format, @Nullable Compression compression, @Nullable String since) {
+        return new ExportRequest(format, compression, since, null, null, null, null, null);
+    }
+}
@@ -6,7 +6,8 @@ import java.time.Instant;
 import java.util.UUID;
 
 @Entity
-@Table(name = "export_jobs")
+@Table(name = "export_jobs",
+        indexes = @Index(name = "idx_export_jobs_fingerprint", columnList = "fingerprint"))
 @Getter
 @Setter
 @NoArgsConstructor
@@ -22,9 +23,50 @@ public class ExportJob {
     @Column(nullable = false)
     private ExportStatus status;
 
+    @Enumerated(EnumType.STRING)
+    private ExportFormat format;
+
+    @Enumerated(EnumType.STRING)
+    private QueryMode queryMode;
+
+    @Enumerated(EnumType.STRING)
+    private ExportType exportType;
+
+    @Enumerated(EnumType.STRING)
+    private Compression compression;
+
+    // Delta scope: the export this one continues, and/or the created_at lower bound
+    private UUID baseJobId;
+    private Instant deltaSince;
+
+    // Watermark pinned at creation: the export covers ids firstId..watermarkId
+    private Long firstId;
+    private Long watermarkId;
+    private Instant watermarkCreatedAt;
+    // PostgreSQL snapshot watermarkId was read in; watermarkSettled records whether the transactions
+    // open in it had ended before rows were read. A delta only continues a job whose watermark settled.
+    @Column(length = 4000)
+    private String watermarkSnapshot;
+    private Boolean watermarkSettled;
+
+    // Requested scope within firstId..watermarkId: projected columns (null = all) and row filters
+    private String columns;
+    private Long idFrom;
+    private Long idTo;
+    private Instant createdFrom;
+    private Instant createdTo;
+
+    // Result cache key: the source table state and export parameters this job was started for
+    @Column(length = 64)
+    private String fingerprint;
+
     private Long totalRecords;
+    // totalRecords is the planner's estimate until the exact count or the finished export replaces it
+    private Boolean totalRecordsEstimated;
     private Long processedRecords;
+    // The exported object, or the manifest.json of an export split into fileCount files
     private String s3Key;
+    private Integer fileCount;
 
     @Column(length = 1000)
     private String errorMessage;
@@ -38,21 +80,48 @@ public class ExportJob {
     // Metrics fields
     private Long fileSizeBytes;
     private Long uncompressedSizeBytes;
+    private Double compressionRatio;
     private Double rowsPerSecond;
     private Long durationMs;
 
+    // Queue lease: the node running the job renews leaseExpiresAt; once it lapses any node may claim the job.
+    // Written only by ExportJobQueue, so saving a stale entity never rolls a renewed lease back.
+    @Column(insertable = false, updatable = false)
+    private String leaseOwner;
+    @Column(insertable = false, updatable = false)
+    private Instant leaseExpiresAt;
+    @Column(insertable = false, updatable = false)
+    private Integer attempts;
+
+    // Resume checkpoint: parts 1..checkpointPartNumber of uploadId hold every id <= checkpointLastId
+    private String uploadId;
+    private Integer checkpointPartNumber;
+    private Long checkpointLastId;
+    private Long checkpointRows;
+    private Long checkpointUncompressedBytes;
+    private Long checkpointCompressedBytes;
+
     @PrePersist
     protected void onCreate() {
         createdAt = Instant.now();
         if (status == null) {
             status = ExportStatus.PENDING;
         }
+        if (format == null) {
+            format = ExportFormat.CSV;
+        }
+        if (exportType == null) {
+            exportType = ExportType.FULL;
+        }
         if (processedRecords == null) {
             processedRecords = 0L;
         }
     }
 
     public void calculateMetrics() {
+        if (uncompressedSizeBytes != null && fileSizeBytes != null && fileSizeBytes > 0) {
+            compressionRatio = (double) uncompressedSizeBytes / fileSizeBytes;
+        }
         if (startedAt != null && finishedAt != null) {
             durationMs = finishedAt.toEpochMilli() - startedAt.toEpochMilli();
             if (durationMs > 0 && totalRecords != null) {
@@ -64,4 +133,45 @@ public class ExportJob {
     public enum ExportStatus {
         PENDING, RUNNING, COMPLETED, FAILED
     }
+
+    public enum ExportFormat {
+        CSV,
+        /** Typed columns in ZSTD-compressed row groups */
+        PARQUET
+    }
+
+    /**
+     * Codec applied to the uploaded object.
+     */
+    public enum Compression {
+        NONE,
+        GZIP,
+        /** Zstandard: close to gzip's ratio at several times the speed */
+        ZSTD,
+        /** LZ4 frames: fastest, lowest ratio */
+        LZ4
+    }
+
+    public enum ExportType {
+        /** Every user up to the watermark */
+        FULL,
+        /** Only users added after a base export's watermark or since a timestamp */
+        DELTA
+    }
+
+    /**
+     * How rows were read from the database.
+     */
+    public enum QueryMode {
+        /** Single JDBC cursor, rows encoded in Java */
+        CURSOR,
+        /** Keyset-ordered batches, each on a pooled connection only while it is read */
+        CHUNKED_CURSOR,
+        /** Id-range partitions on parallel JDBC cursors */
+        PARALLEL_CURSOR,
+        /** Single {@code COPY ... TO STDOUT}, CSV produced by the server */
+        COPY,
+        /** Id-range partitions on parallel {@code COPY ... TO STDOUT} streams */
+        PARALLEL_COPY
+    }
 }
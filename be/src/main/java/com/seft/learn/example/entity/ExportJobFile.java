@@ -0,0 +1,45 @@
+package com.seft.learn.example.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.util.UUID;
+
+/**
+ * Finished output file of an export split into several objects.
+ */
+@Entity
+@Table(name = "export_job_files",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"job_id", "file_number"}))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ExportJobFile {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @Column(name = "job_id", nullable = false)
+    private UUID jobId;
+
+    @Column(name = "file_number", nullable = false)
+    private Integer fileNumber;
+
+    @Column(nullable = false)
+    private String s3Key;
+
+    @Column(nullable = false)
+    private Long rowCount;
+
+    @Column(nullable = false)
+    private Long sizeBytes;
+
+    @Column(nullable = false)
+    private Long uncompressedSizeBytes;
+
+    // Ids minId..maxId of the export's scope are in this file; null for an empty export
+    private Long minId;
+    private Long maxId;
+}
@@ -0,0 +1,32 @@
+package com.seft.learn.example.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.util.UUID;
+
+/**
+ * Uploaded multipart part of a resumable export.
+ */
+@Entity
+@Table(name = "export_job_parts",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"job_id", "part_number"}))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ExportJobPart {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @Column(name = "job_id", nullable = false)
+    private UUID jobId;
+
+    @Column(name = "part_number", nullable = false)
+    private Integer partNumber;
+
+    @Column(nullable = false)
+    private String eTag;
+}
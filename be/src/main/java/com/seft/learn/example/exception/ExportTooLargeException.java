@@ -0,0 +1,12 @@
+package com.seft.learn.example.exception;
+
+/**
+ * A direct download would exceed its size or time cap; the export has to go through
+ * the asynchronous S3 path ({@code POST /exports/users}) instead.
+ */
+public class ExportTooLargeException extends RuntimeException {
+
+	public ExportTooLargeException(String message) {
+		super(message);
+	}
+}
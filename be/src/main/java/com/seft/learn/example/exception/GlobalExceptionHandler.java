@@ -22,6 +22,13 @@ public class GlobalExceptionHandler {
 		return buildErrorResponse(HttpStatus.BAD_REQUEST, message);
 	}
 
+	@ExceptionHandler(ExportTooLargeException.class)
+	public ResponseEntity<ErrorResponse> handleExportTooLarge(ExportTooLargeException ex) {
+		String message = ex.getMessage() != null ? ex.getMessage() : "Export too large";
+		log.info("Direct export refused: {}", message);
+		return buildErrorResponse(HttpStatus.valueOf(422), message);
+	}
+
 	@ExceptionHandler(Exception.class)
 	public ResponseEntity<ErrorResponse> handleGenericException(Exception ex) {
 		log.error("Unexpected error", ex);
@@ -0,0 +1,19 @@
+package com.seft.learn.example.repository;
+
+import com.seft.learn.example.entity.ExportJobFile;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+import java.util.UUID;
+
+public interface ExportJobFileRepository extends JpaRepository<ExportJobFile, UUID> {
+
+    List<ExportJobFile> findByJobIdOrderByFileNumber(UUID jobId);
+
+    @Modifying
+    @Query("DELETE FROM ExportJobFile f WHERE f.jobId = :jobId AND f.fileNumber > :fileNumber")
+    void deleteByJobIdAndFileNumberAfter(@Param("jobId") UUID jobId, @Param("fileNumber") Integer fileNumber);
+}
@@ -0,0 +1,19 @@
+package com.seft.learn.example.repository;
+
+import com.seft.learn.example.entity.ExportJobPart;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+import java.util.UUID;
+
+public interface ExportJobPartRepository extends JpaRepository<ExportJobPart, UUID> {
+
+    List<ExportJobPart> findByJobIdAndPartNumberLessThanEqualOrderByPartNumber(UUID jobId, Integer partNumber);
+
+    @Modifying
+    @Query("DELETE FROM ExportJobPart p WHERE p.jobId = :jobId")
+    void deleteByJobId(@Param("jobId") UUID jobId);
+}
@@ -1,11 +1,18 @@
 package com.seft.learn.example.repository;
 
 import com.seft.learn.example.entity.ExportJob;
+import jakarta.persistence.LockModeType;
+import org.jspecify.annotations.Nullable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 public interface ExportJobRepository extends JpaRepository<ExportJob, UUID> {
@@ -13,4 +20,35 @@ public interface ExportJobRepository extends JpaRepository<ExportJob, UUID> {
     @Modifying
     @Query("UPDATE ExportJob e SET e.processedRecords = :processed WHERE e.id = :id")
     void updateProgress(@Param("id") UUID id, @Param("processed") Long processed);
+
+    List<ExportJob> findByStatus(ExportJob.ExportStatus status);
+
+    Optional<ExportJob> findFirstByFingerprintAndStatusInAndCreatedAtAfterOrderByCreatedAtDesc(
+            String fingerprint, Collection<ExportJob.ExportStatus> statuses, Instant createdAfter);
+
+    @Modifying
+    @Query("UPDATE ExportJob e SET e.fingerprint = null WHERE e.fingerprint IS NOT NULL AND e.createdAt < :cutoff")
+    int clearFingerprintsBefore(@Param("cutoff") Instant cutoff);
+
+    /**
+     * The job if {@code leaseOwner} holds its lease, locked for the rest of the
+     * transaction so the lease cannot change hands before the caller's writes commit.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<ExportJob> findByIdAndLeaseOwner(UUID id, String leaseOwner);
+
+    @Modifying
+    @Query("UPDATE ExportJob e SET e.uploadId = :uploadId, e.checkpointPartNumber = null, e.checkpointLastId = null, "
+            + "e.checkpointRows = null, e.checkpointUncompressedBytes = null, e.checkpointCompressedBytes = null "
+            + "WHERE e.id = :id AND e.leaseOwner = :owner")
+    int resetCheckpoint(@Param("id") UUID id, @Param("owner") String owner,
+                        @Param("uploadId") @Nullable String uploadId);
+
+    @Modifying
+    @Query("UPDATE ExportJob e SET e.checkpointPartNumber = :partNumber, e.checkpointLastId = :lastId, "
+            + "e.checkpointRows = :rows, e.checkpointUncompressedBytes = :uncompressed, "
+            + "e.checkpointCompressedBytes = :compressed WHERE e.id = :id AND e.leaseOwner = :owner")
+    int updateCheckpoint(@Param("id") UUID id, @Param("owner") String owner, @Param("partNumber") Integer partNumber,
+                         @Param("lastId") Long lastId, @Param("rows") Long rows,
+                         @Param("uncompressed") Long uncompressed, @Param("compressed") Long compressed);
 }
@@ -18,5 +18,6 @@ public class StartupRunner implements CommandLineRunner {
 		log.info("Initializing S3 bucket...");
 		s3Service.createBucketIfNotExists();
 		log.info("S3 bucket initialization complete");
+		// Interrupted exports are picked up by ExportWorker once their lease expires
 	}
 }
@@ -0,0 +1,68 @@
+package com.seft.learn.example.service;
+
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.ListPartsRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Non-blocking {@link S3AsyncClient}: a part in flight holds no thread, only its
+ * buffers, which the client's event loop publishes straight to the connection.
+ */
+@Component
+class AsyncMultipartUploadBackend implements MultipartUploadBackend {
+
+    private final S3AsyncClient s3AsyncClient;
+
+    AsyncMultipartUploadBackend(S3AsyncClient s3AsyncClient) {
+        this.s3AsyncClient = s3AsyncClient;
+    }
+
+    @Override
+    public String createMultipartUpload(CreateMultipartUploadRequest request) {
+        return join(s3AsyncClient.createMultipartUpload(request)).uploadId();
+    }
+
+    @Override
+    public void listParts(ListPartsRequest request) {
+        join(s3AsyncClient.listParts(request));
+    }
+
+    @Override
+    public CompletableFuture<String> uploadPart(UploadPartRequest request, PartBuffer.Part part) {
+        AsyncRequestBody body = AsyncRequestBody.fromRemainingByteBuffersUnsafe(part.byteBuffers());
+        return s3AsyncClient.uploadPart(request, body).thenApply(UploadPartResponse::eTag);
+    }
+
+    @Override
+    public void completeMultipartUpload(CompleteMultipartUploadRequest request) {
+        join(s3AsyncClient.completeMultipartUpload(request));
+    }
+
+    @Override
+    public void abortMultipartUpload(AbortMultipartUploadRequest request) {
+        join(s3AsyncClient.abortMultipartUpload(request));
+    }
+
+    /**
+     * Rethrows the SDK exception itself, like the blocking client would.
+     */
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.seft.learn.example.service;
+
+import com.seft.learn.example.dto.ExportJobResponse;
+import com.seft.learn.example.dto.ExportProgressEvent;
+import com.seft.learn.example.entity.ExportJob;
+import com.seft.learn.example.entity.ExportJob.ExportStatus;
+import com.seft.learn.example.repository.ExportJobRepository;
+import com.seft.learn.example.service.export.ExportProgressTracker;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.Nullable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pushes export state to {@code /exports/{jobId}/events} subscribers. All subscribers
+ * of a job share one source: a job running on this node reports its rows from
+ * {@link ExportProgressTracker} every {@code export.events.interval-ms} and its state
+ * changes as they happen, without touching the database. A job running on another
+ * node is read once per interval for all of its subscribers here.
+ *
+ * <p>Events: {@code status} carries an {@link ExportJobResponse} and is sent on
+ * subscribe and on every state change; {@code progress} carries an
+ * {@link ExportProgressEvent}. The stream ends once the job is COMPLETED or FAILED.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ExportEventHub {
+
+    private final ExportJobRepository exportJobRepository;
+    private final ExportProgressTracker progressTracker;
+    private final Map<UUID, Set<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+
+    @Value("${export.events.timeout-ms:1800000}")
+    private long timeoutMs = 1_800_000;
+
+    /**
+     * Opens an event stream for {@code jobId}, starting with its current status.
+     *
+     * @return {@code null} if there is no such job
+     */
+    public @Nullable SseEmitter subscribe(UUID jobId) {
+        ExportJob job = exportJobRepository.findById(jobId).orElse(null);
+        if (job == null) {
+            return null;
+        }
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        emitter.onCompletion(() -> unsubscribe(jobId, emitter));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(e -> unsubscribe(jobId, emitter));
+
+        if (send(emitter, "status", ExportJobResponse.from(job)) && isFinished(job)) {
+            emitter.complete();
+            return emitter;
+        }
+        subscribers.computeIfAbsent(jobId, id -> ConcurrentHashMap.newKeySet()).add(emitter);
+        return emitter;
+    }
+
+    /**
+     * Sends a state change of {@code job}, ending the streams once it finished.
+     */
+    public void publish(ExportJob job) {
+        UUID jobId = job.getId();
+        Set<SseEmitter> emitters = subscribers.get(jobId);
+        if (emitters == null) {
+            return;
+        }
+        broadcast(emitters, "status", ExportJobResponse.from(job));
+        if (isFinished(job)) {
+            subscribers.remove(jobId);
+            emitters.forEach(SseEmitter::complete);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${export.events.interval-ms:1000}")
+    public void pushProgress() {
+        subscribers.forEach((jobId, emitters) -> {
+            ExportProgressTracker.Progress progress = progressTracker.progressOf(jobId);
+            if (progress != null) {
+                broadcast(emitters, "progress",
+                        new ExportProgressEvent(jobId, progress.rows(), progress.rowsPerSecond()));
+                return;
+            }
+            // Queued, or running on another node
+            exportJobRepository.findById(jobId).ifPresent(this::publish);
+        });
+    }
+
+    private void broadcast(Set<SseEmitter> emitters, String name, Object data) {
+        for (SseEmitter emitter : emitters) {
+            send(emitter, name, data);
+        }
+    }
+
+    private boolean send(SseEmitter emitter, String name, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(name).data(data));
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            // Client went away; onError/onCompletion unsubscribes it
+            log.debug("Dropping export event subscriber: {}", e.getMessage());
+            emitter.completeWithError(e);
+            return false;
+        }
+    }
+
+    private void unsubscribe(UUID jobId, SseEmitter emitter) {
+        subscribers.computeIfPresent(jobId, (id, emitters) -> {
+            emitters.remove(emitter);
+            return emitters.isEmpty() ? null : emitters;
+        });
+    }
+
+    private static boolean isFinished(ExportJob job) {
+        return job.getStatus() == ExportStatus.COMPLETED || job.getStatus() == ExportStatus.FAILED;
+    }
+}
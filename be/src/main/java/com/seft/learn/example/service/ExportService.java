@@ -1,20 +1,41 @@
 package com.seft.learn.example.service;
 
+import com.seft.learn.example.dto.ExportDownloadResponse;
+import com.seft.learn.example.dto.ExportManifest;
+import com.seft.learn.example.dto.ExportRequest;
 import com.seft.learn.example.entity.ExportJob;
+import com.seft.learn.example.entity.ExportJob.Compression;
+import com.seft.learn.example.entity.ExportJob.ExportFormat;
 import com.seft.learn.example.entity.ExportJob.ExportStatus;
+import com.seft.learn.example.entity.ExportJob.ExportType;
+import com.seft.learn.example.entity.ExportJob.QueryMode;
+import com.seft.learn.example.exception.ExportTooLargeException;
 import com.seft.learn.example.repository.ExportJobRepository;
 import com.seft.learn.example.service.export.*;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.jspecify.annotations.Nullable;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Isolation;
-import org.springframework.transaction.annotation.Transactional;
+import software.amazon.awssdk.services.s3.model.NoSuchUploadException;
+import tools.jackson.databind.json.JsonMapper;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 
 @Service
 @RequiredArgsConstructor
@@ -26,95 +47,818 @@ public class ExportService {
     private final S3PresignedUrlService s3PresignedUrlService;
     private final StreamingQueryExecutor queryExecutor;
     private final ExportProgressTracker progressTracker;
+    private final PartitionedExportRunner partitionedExportRunner;
+    private final ExportCheckpointStore checkpointStore;
+    private final ExportJobQueue jobQueue;
+    private final ExportResultCache resultCache;
+    private final ExportRowCounter rowCounter;
+    private final ExportEventHub eventHub;
+    private final ExportMeters exportMeters;
+    @Qualifier("exportStageExecutor")
+    private final Executor stageExecutor;
+    @Qualifier("exportFileExecutor")
+    private final Executor fileExecutor;
+    private final JsonMapper jsonMapper;
 
-    private static final boolean GZIP_ENABLED = true;
+    // Id span exported per COPY statement, so COPY exports get a resume point every slice
+    private static final long COPY_SLICE_IDS = 100_000;
+    private static final int MAX_COPY_SLICES = 1024;
+    // Parquet rows are metered in blocks of this many rows
+    private static final int PARQUET_METER_ROWS = 8192;
+    // Fits ExportJob.watermarkSnapshot
+    private static final int MAX_WATERMARK_SNAPSHOT_LENGTH = 4000;
+    private static final long WATERMARK_POLL_MS = 200;
+
+    @Value("${export.copy.enabled:true}")
+    private boolean copyEnabled = true;
+
+    @Value("${export.chunked.enabled:false}")
+    private boolean chunkedEnabled = false;
+
+    @Value("${export.chunked.chunk-rows:50000}")
+    private int chunkRows = 50_000;
+
+    @Value("${export.output.max-file-rows:0}")
+    private long maxFileRows = 0;
+
+    @Value("${export.output.max-file-mb:0}")
+    private long maxFileMb = 0;
+
+    @Value("${export.watermark.settle-timeout-ms:30000}")
+    private long watermarkSettleTimeoutMs = 30_000;
+
+    @Value("${export.parquet.row-group-size-mb:64}")
+    private int parquetRowGroupMb = 64;
+
+    @Value("${export.direct.max-rows:1000000}")
+    private long directMaxRows = 1_000_000;
+
+    @Value("${export.direct.max-duration-ms:120000}")
+    private long directMaxDurationMs = 120_000;
 
     public UUID startExport() {
+        return startExport(ExportRequest.of(ExportFormat.CSV, null, null)).jobId();
+    }
+
+    /**
+     * Queues a full export, or a delta export when {@code since} is given, and returns
+     * without waiting for it; an {@link ExportWorker} on any node picks it up. The id range
+     * is pinned here, so the watermark a later delta continues from is known up front.
+     * Column and row filters of the request are kept on the job and applied when it runs.
+     * A request matching a recent job on an unchanged table returns that job instead, even
+     * one still queued or running, so a burst of identical requests runs one export.
+     *
+     * <p>{@code compression} {@code null} picks gzip for CSV and none for Parquet;
+     * {@code since} is the id of a completed base export, or an ISO-8601
+     * {@code created_at} lower bound.
+     *
+     * @throws IllegalArgumentException if {@code since} is neither, the base export cannot be
+     *                                  continued, or a column or filter is invalid
+     */
+    public StartedExport startExport(ExportRequest request) {
+        String since = request.since();
         ExportJob job = ExportJob.builder()
                 .status(ExportStatus.PENDING)
+                .format(request.format())
+                .compression(resolveCompression(request.format(), request.compression()))
+                .exportType(since != null ? ExportType.DELTA : ExportType.FULL)
+                .build();
+        applyScope(job, request);
+
+        ExportWatermark watermark = queryExecutor.findWatermark();
+        if (since == null) {
+            pinFullRange(job, watermark);
+        } else {
+            pinDeltaRange(job, since, watermark);
+            // A since at or after createdTo leaves an empty window
+            exportQuery(job);
+        }
+
+        String fingerprint = resultCache.fingerprint(job);
+        if (fingerprint != null) {
+            ExportJob cached = resultCache.find(fingerprint);
+            if (cached != null) {
+                log.info("Reusing export for an unchanged table: jobId={}, status={}", cached.getId(), cached.getStatus());
+                return new StartedExport(cached.getId(), true);
+            }
+            job.setFingerprint(fingerprint);
+        }
+        return new StartedExport(exportJobRepository.save(job).getId(), false);
+    }
+
+    /**
+     * Scopes a CSV export to be streamed straight into an HTTP response, refusing it when
+     * the planner expects more than {@code export.direct.max-rows} rows.
+     *
+     * @throws ExportTooLargeException if the export is over the row cap
+     * @throws IllegalArgumentException if the request is not a plain CSV export or a
+     *                                  column or filter is invalid
+     */
+    public DirectExport prepareDirectExport(ExportRequest request) {
+        if (request.format() != ExportFormat.CSV || request.since() != null) {
+            throw new IllegalArgumentException("Direct downloads are full CSV exports only");
+        }
+        ExportJob job = ExportJob.builder()
+                .format(ExportFormat.CSV)
+                .compression(resolveCompression(ExportFormat.CSV, request.compression()))
+                .exportType(ExportType.FULL)
+                .build();
+        applyScope(job, request);
+        UserQuery query = exportQuery(job);
+        IdRange range = scanRange(job, query);
+
+        long rows = range != null ? rowCounter.count(range, query).rows() : 0L;
+        if (rows > directMaxRows) {
+            throw new ExportTooLargeException("About " + rows + " rows is over the direct download limit of "
+                    + directMaxRows + "; start an export with POST /exports/users instead");
+        }
+        Compression compression = compressionOf(job);
+        String fileName = "users-" + Instant.now().getEpochSecond() + ".csv"
+                + s3StreamingUploader.codecFor(compression).fileSuffix();
+        return new DirectExport(query, range, compression, fileName);
+    }
+
+    /**
+     * Streams {@code export} as CSV into {@code out} on the calling thread. Rows are
+     * encoded and written as the cursor yields them, so a slow client blocks the write
+     * and with it the next fetch; at most one fetch and one encoder buffer are held.
+     *
+     * <p>Gives up with {@link ExportTooLargeException} after
+     * {@code export.direct.max-duration-ms}; the response is already committed then,
+     * so the client sees a truncated download.
+     */
+    public void streamDirect(DirectExport export, OutputStream out) throws IOException {
+        ExportMetrics metrics = ExportMetrics.builder()
+                .startTime(Instant.now())
                 .build();
-        job = exportJobRepository.save(job);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(directMaxDurationMs);
 
-        runExportAsync(job.getId());
-        return job.getId();
+        try (OutputStream encoded = s3StreamingUploader.codecFor(export.compression()).compress(out)) {
+            ExportSink sink = encoded::write;
+            CsvRowEncoder encoder = new CsvRowEncoder(export.query());
+            encoder.encodeHeader();
+            IdRange range = export.range();
+            if (range != null) {
+                queryExecutor.streamUsers(rs -> {
+                    try {
+                        encoder.encodeRow(rs);
+                        metrics.incrementRows();
+                        if (encoder.isFull()) {
+                            encoder.drainTo(sink);
+                            if (System.nanoTime() - deadline > 0) {
+                                throw new ExportTooLargeException("Direct download exceeded "
+                                        + directMaxDurationMs + " ms after " + metrics.getProcessedRows() + " rows");
+                            }
+                        }
+                    } catch (SQLException | IOException e) {
+                        throw new RuntimeException("Failed to stream row", e);
+                    }
+                }, range, export.query());
+            }
+            encoder.drainTo(sink);
+        }
+        log.info("Direct export streamed: file={}, rows={}, duration={}, speed={}",
+                export.fileName(), metrics.getProcessedRows(), metrics.formatDuration(), metrics.formatSpeed());
     }
 
-    @Async("taskExecutor")
-    @Transactional(isolation = Isolation.REPEATABLE_READ, readOnly = true)
-    public void runExportAsync(UUID jobId) {
-        String s3Key = generateS3Key(jobId);
-        S3StreamingUploader.StreamingUpload upload = null;
+    /**
+     * Runs (or resumes) an export. Rows are read in id order and the upload records a
+     * checkpoint at row boundaries, so a failed or interrupted job continues after the
+     * last id whose parts are already on S3 instead of starting over. A CSV export over
+     * {@code export.output.max-file-rows} / {@code max-file-mb} is split into several
+     * files listed in a {@code manifest.json}; it resumes after its last finished file.
+     *
+     * @param leaseOwner the lease owner the job was claimed as; checkpoints and the final
+     *                   status are only written while it still holds the lease
+     * @param leaseHeld whether this node still owns the job; once it does not, a failure
+     *                  leaves the job and its multipart upload to the node that took over
+     */
+    public void runExport(UUID jobId, String leaseOwner, BooleanSupplier leaseHeld) {
+        ExportUpload upload = null;
+        ExportPipeline pipeline = null;
         ExportMetrics metrics = ExportMetrics.builder()
                 .jobId(jobId)
                 .startTime(Instant.now())
                 .build();
+        ExportFormat activeFormat = null;
 
         try {
-            initializeJob(jobId);
-            upload = s3StreamingUploader.startUpload(s3Key, GZIP_ENABLED);
-            
-            processExport(jobId, upload, metrics);
-            
+            ExportJob job = exportJobRepository.findById(jobId).orElseThrow();
+            ExportFormat format = formatOf(job);
+            Compression compression = compressionOf(job);
+            ExportMeters.Stages stages = exportMeters.stages(format, compression);
+            exportMeters.exportStarted(format);
+            activeFormat = format;
+            String s3Key = generateS3Key(jobId, format, compression);
+            UserQuery query = exportQuery(job);
+            IdRange range = scanRange(job, query);
+            settleWatermark(job);
+            QueryMode queryMode = initializeJob(job, range, query);
+            RollingExportUpload files = isSplit(format) ? openFiles(jobId, leaseOwner, compression, query, range) : null;
+            upload = files != null
+                    ? files
+                    : openUpload(jobId, leaseOwner, s3Key, format, compression,
+                            job.getUploadId(), checkpointStore.checkpointOf(job));
+            Long totalRecords = job.getTotalRecords();
+            upload.expectRows(totalRecords != null ? totalRecords : 0L);
+            upload.instrument(stages);
+            ExportCheckpoint resumeFrom = upload.getLastCheckpoint();
+            if (resumeFrom != null) {
+                metrics.addRows(resumeFrom.rows());
+            }
+            pipeline = new ExportPipeline(upload, stageExecutor, progressListener(jobId, metrics, upload));
+
+            // Split exports write a header into every file themselves
+            boolean writeHeader = files == null && resumeFrom == null;
+            processExport(pipeline, metrics, stages, format, queryMode, range, query, resumeFrom, writeHeader);
+            pipeline.finish();
+
+            // Completing the object cannot be undone, so make sure another node has not taken over
+            if (!holdsLease(jobId, leaseOwner, leaseHeld)) {
+                throw new IllegalStateException("Export lease lost before completing the upload");
+            }
             long fileSize = upload.complete();
             long uncompressedSize = upload.getUncompressedBytes();
             metrics.addBytes(fileSize);
-            
-            completeJob(jobId, s3Key, metrics, uncompressedSize);
+            int fileCount = 1;
+            if (files != null) {
+                List<ExportFile> written = files.getFiles();
+                s3Key = writeManifest(job, written);
+                fileCount = written.size();
+            }
+
+            completeJob(jobId, leaseOwner, s3Key, fileCount, metrics, uncompressedSize);
             logCompletion(metrics, uncompressedSize);
 
         } catch (Exception e) {
-            handleError(jobId, upload, e);
+            handleError(jobId, leaseOwner, pipeline, upload, e, leaseHeld);
+        } finally {
+            progressTracker.untrack(jobId);
+            if (activeFormat != null) {
+                exportMeters.exportFinished(activeFormat);
+            }
         }
     }
 
-    private String generateS3Key(UUID jobId) {
-        return "exports/" + jobId + ".csv" + (GZIP_ENABLED ? ".gz" : "");
+    private static ExportFormat formatOf(ExportJob job) {
+        return job.getFormat() != null ? job.getFormat() : ExportFormat.CSV;
     }
 
-    private void initializeJob(UUID jobId) {
-        ExportJob job = exportJobRepository.findById(jobId).orElseThrow();
+    /**
+     * Parquet compresses its column chunks itself, so only CSV takes a file codec.
+     */
+    private static Compression resolveCompression(ExportFormat format, @Nullable Compression requested) {
+        if (format == ExportFormat.PARQUET) {
+            if (requested != null && requested != Compression.NONE) {
+                throw new IllegalArgumentException("Parquet exports are compressed per column chunk; use compression=none");
+            }
+            return Compression.NONE;
+        }
+        return requested != null ? requested : Compression.GZIP;
+    }
+
+    private static Compression compressionOf(ExportJob job) {
+        return job.getCompression() != null ? job.getCompression() : resolveCompression(formatOf(job), null);
+    }
+
+    private String generateS3Key(UUID jobId, ExportFormat format, Compression compression) {
+        return switch (format) {
+            case CSV -> "exports/" + jobId + ".csv" + s3StreamingUploader.codecFor(compression).fileSuffix();
+            case PARQUET -> "exports/" + jobId + ".parquet";
+        };
+    }
+
+    private String generateFileKey(UUID jobId, int fileNumber, Compression compression) {
+        return String.format("exports/%s/part-%05d.csv%s", jobId, fileNumber, s3StreamingUploader.codecFor(compression).fileSuffix());
+    }
+
+    private static String manifestKey(UUID jobId) {
+        return "exports/" + jobId + "/manifest.json";
+    }
+
+    private boolean isSplit(ExportFormat format) {
+        return format == ExportFormat.CSV && (maxFileRows > 0 || maxFileMb > 0);
+    }
+
+    private void pinFullRange(ExportJob job, @Nullable ExportWatermark watermark) {
+        if (watermark != null) {
+            job.setFirstId(watermark.minId());
+            pinWatermark(job, watermark.maxId(), watermark);
+        }
+    }
+
+    /**
+     * A delta continues a completed export right after its watermark id (primary key
+     * range), or covers users created since a timestamp ({@code idx_users_created_at}).
+     */
+    private void pinDeltaRange(ExportJob job, String since, @Nullable ExportWatermark watermark) {
+        UUID baseJobId = parseJobId(since);
+        if (baseJobId != null) {
+            ExportJob base = exportJobRepository.findById(baseJobId)
+                    .orElseThrow(() -> new IllegalArgumentException("Base export not found: " + baseJobId));
+            Long baseWatermarkId = base.getWatermarkId();
+            if (base.getStatus() != ExportStatus.COMPLETED || baseWatermarkId == null) {
+                throw new IllegalArgumentException("Base export is not a completed export with a watermark: " + baseJobId);
+            }
+            if (hasRowFilter(base)) {
+                throw new IllegalArgumentException("Base export is filtered and cannot be continued: " + baseJobId);
+            }
+            if (Boolean.FALSE.equals(base.getWatermarkSettled())) {
+                throw new IllegalArgumentException("Base export may have missed rows committed late below its watermark "
+                        + "and cannot be continued; start a full export or a created_at delta: " + baseJobId);
+            }
+            job.setBaseJobId(baseJobId);
+            job.setFirstId(baseWatermarkId + 1);
+            // Never move the watermark backwards, or the next delta would repeat rows
+            long lastId = watermark != null ? Math.max(watermark.maxId(), baseWatermarkId) : baseWatermarkId;
+            pinWatermark(job, lastId, watermark);
+            return;
+        }
+
+        Instant createdFrom = parseTimestamp(since);
+        job.setDeltaSince(createdFrom);
+        IdRange created = queryExecutor.findIdRange(new UserQuery(UserColumn.ALL, createdFrom, null));
+        if (created != null) {
+            job.setFirstId(created.minId());
+        }
+        if (watermark != null) {
+            pinWatermark(job, watermark.maxId(), watermark);
+        }
+    }
+
+    private static void pinWatermark(ExportJob job, long lastId, @Nullable ExportWatermark watermark) {
+        job.setWatermarkId(lastId);
+        Instant maxCreatedAt = watermark != null ? watermark.maxCreatedAt() : null;
+        if (maxCreatedAt != null) {
+            job.setWatermarkCreatedAt(maxCreatedAt);
+        }
+        String snapshot = watermark != null ? watermark.snapshot() : null;
+        if (snapshot != null && snapshot.length() > MAX_WATERMARK_SNAPSHOT_LENGTH) {
+            // Too many open transactions to keep track of; the job still runs, but no delta continues it
+            job.setWatermarkSettled(false);
+        } else {
+            job.setWatermarkSnapshot(snapshot);
+        }
+    }
+
+    /**
+     * Waits, once per job and before any row is read, for the transactions still open when
+     * its watermark was read: each may insert an id at or below the watermark and commit
+     * afterwards, and a delta continuing after the watermark would never export that row.
+     * A job whose transactions are still open after {@code export.watermark.settle-timeout-ms}
+     * runs anyway, but cannot be the base of a delta.
+     */
+    private void settleWatermark(ExportJob job) throws InterruptedException {
+        String snapshot = job.getWatermarkSnapshot();
+        if (snapshot == null || job.getWatermarkSettled() != null) {
+            return;
+        }
+        boolean settled = queryExecutor.awaitTransactions(snapshot, watermarkSettleTimeoutMs, WATERMARK_POLL_MS);
+        job.setWatermarkSettled(settled);
+        if (!settled) {
+            log.warn("Transactions open at the watermark did not finish, no delta can continue this export: "
+                    + "jobId={}, watermarkId={}", job.getId(), job.getWatermarkId());
+        }
+    }
+
+    private static @Nullable UUID parseJobId(String since) {
+        try {
+            return UUID.fromString(since);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static Instant parseTimestamp(String since) {
+        try {
+            return Instant.parse(since);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("since must be an export id or an ISO-8601 timestamp: " + since);
+        }
+    }
+
+    private static @Nullable Instant parseOptionalTimestamp(String name, @Nullable String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return Instant.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException(name + " must be an ISO-8601 timestamp: " + value);
+        }
+    }
+
+    /**
+     * Validates the requested columns and row filters and stores them on the job.
+     */
+    private static void applyScope(ExportJob job, ExportRequest request) {
+        String columns = request.columns();
+        List<UserColumn> parsedColumns = columns != null && !columns.isBlank()
+                ? UserColumn.parseList(columns)
+                : UserColumn.ALL;
+        Instant createdFrom = parseOptionalTimestamp("createdFrom", request.createdFrom());
+        Instant createdTo = parseOptionalTimestamp("createdTo", request.createdTo());
+        // Rejects an empty column list, duplicates and an empty created_at window
+        new UserQuery(parsedColumns, createdFrom, createdTo);
+
+        Long idFrom = request.idFrom();
+        Long idTo = request.idTo();
+        if (idFrom != null && idTo != null && idFrom > idTo) {
+            throw new IllegalArgumentException("idFrom must not be greater than idTo");
+        }
+
+        if (parsedColumns != UserColumn.ALL) {
+            job.setColumns(UserColumn.formatList(parsedColumns));
+        }
+        if (createdFrom != null) {
+            job.setCreatedFrom(createdFrom);
+        }
+        if (createdTo != null) {
+            job.setCreatedTo(createdTo);
+        }
+        if (idFrom != null) {
+            job.setIdFrom(idFrom);
+        }
+        if (idTo != null) {
+            job.setIdTo(idTo);
+        }
+    }
+
+    /**
+     * A delta only continues an export that covered every row up to its watermark.
+     */
+    private static boolean hasRowFilter(ExportJob job) {
+        return job.getIdFrom() != null || job.getIdTo() != null
+                || job.getCreatedFrom() != null || job.getCreatedTo() != null;
+    }
+
+    /**
+     * Ids covered by the job, or {@code null} if there is nothing to export.
+     */
+    private static @Nullable IdRange exportRange(ExportJob job) {
+        Long firstId = job.getFirstId();
+        Long lastId = job.getWatermarkId();
+        if (firstId == null || lastId == null || firstId > lastId) {
+            return null;
+        }
+        return new IdRange(firstId, lastId);
+    }
+
+    /**
+     * The job's range narrowed to the requested ids and to the ids its {@code created_at}
+     * window spans, so a narrow export scans only that slice of the primary key. {@code null}
+     * if nothing is in scope.
+     */
+    private @Nullable IdRange scanRange(ExportJob job, UserQuery query) {
+        if (job.getExportType() != ExportType.DELTA && job.getWatermarkId() == null) {
+            pinFullRange(job, queryExecutor.findWatermark());
+        }
+        IdRange range = exportRange(job);
+        if (range == null) {
+            return null;
+        }
+        long minId = range.minId();
+        long maxId = range.maxId();
+        Long idFrom = job.getIdFrom();
+        if (idFrom != null) {
+            minId = Math.max(minId, idFrom);
+        }
+        Long idTo = job.getIdTo();
+        if (idTo != null) {
+            maxId = Math.min(maxId, idTo);
+        }
+
+        if (query.hasCreatedRange()) {
+            IdRange created = queryExecutor.findIdRange(query);
+            if (created == null) {
+                return null;
+            }
+            minId = Math.max(minId, created.minId());
+            maxId = Math.min(maxId, created.maxId());
+        }
+        return minId <= maxId ? new IdRange(minId, maxId) : null;
+    }
+
+    /**
+     * Columns and {@code created_at} window of the job; a delta's {@code since} and a
+     * requested {@code createdFrom} both bound the window from below.
+     */
+    private static UserQuery exportQuery(ExportJob job) {
+        String columns = job.getColumns();
+        Instant createdFrom = job.getCreatedFrom();
+        Instant deltaSince = job.getDeltaSince();
+        if (deltaSince != null && (createdFrom == null || deltaSince.isAfter(createdFrom))) {
+            createdFrom = deltaSince;
+        }
+        return new UserQuery(columns != null ? UserColumn.parseList(columns) : UserColumn.ALL,
+                createdFrom, job.getCreatedTo());
+    }
+
+    /**
+     * Marks the job running and counts the rows in scope, with the same predicates the
+     * export reads with.
+     */
+    private QueryMode initializeJob(ExportJob job, @Nullable IdRange range, UserQuery query) {
+        QueryMode queryMode = selectQueryMode(formatOf(job));
         job.setStatus(ExportStatus.RUNNING);
         job.setStartedAt(Instant.now());
-        job.setTotalRecords(queryExecutor.countUsers());
+        job.setQueryMode(queryMode);
+        ExportRowCounter.RowCount count = range != null
+                ? rowCounter.count(range, query)
+                : new ExportRowCounter.RowCount(0L, false);
+        job.setTotalRecords(count.rows());
+        job.setTotalRecordsEstimated(count.estimated());
         exportJobRepository.save(job);
+        eventHub.publish(job);
+        if (range != null && count.estimated()) {
+            rowCounter.correctInBackground(job.getId(), range, query);
+        }
+        log.info("Export started: jobId={}, type={}, format={}, queryMode={}, ids={}, columns={}, created=[{}, {})",
+                job.getId(), job.getExportType(), job.getFormat(), queryMode, range,
+                UserColumn.formatList(query.columns()), query.createdFrom(), query.createdTo());
+        return queryMode;
+    }
+
+    /**
+     * Continues the job's multipart upload from its checkpoint when there is one, or
+     * starts a new upload otherwise.
+     */
+    private S3StreamingUploader.StreamingUpload openUpload(UUID jobId, String leaseOwner, String s3Key,
+                                                           ExportFormat format, Compression compression,
+                                                           @Nullable String uploadId,
+                                                           @Nullable ExportCheckpoint checkpoint) {
+        S3StreamingUploader.CheckpointListener listener = (parts, reached) -> {
+            if (!checkpointStore.save(jobId, leaseOwner, parts, reached)) {
+                log.warn("Checkpoint dropped, export lease lost: jobId={}, part={}", jobId, reached.partNumber());
+            }
+        };
+
+        if (uploadId != null && checkpoint != null) {
+            try {
+                S3StreamingUploader.StreamingUpload upload = s3StreamingUploader.resumeUpload(
+                        s3Key, uploadId, compression, checkpointStore.loadParts(jobId, checkpoint), checkpoint, listener);
+                log.info("Export resumed: jobId={}, afterPart={}, afterId={}, rows={}",
+                        jobId, checkpoint.partNumber(), checkpoint.lastId(), checkpoint.rows());
+                return upload;
+            } catch (NoSuchUploadException e) {
+                log.warn("Multipart upload of export is gone, starting over: jobId={}, uploadId={}", jobId, uploadId);
+            }
+        } else if (uploadId != null) {
+            // An attempt that stopped before its first checkpoint; its parts are never resumed
+            log.info("Export has no checkpoint, aborting its upload and starting over: jobId={}, uploadId={}",
+                    jobId, uploadId);
+            s3StreamingUploader.abortUpload(s3Key, uploadId);
+        }
+
+        String contentType = format == ExportFormat.PARQUET
+                ? ParquetUserWriter.CONTENT_TYPE
+                : S3StreamingUploader.CSV_CONTENT_TYPE;
+        S3StreamingUploader.StreamingUpload upload = s3StreamingUploader.startUpload(
+                s3Key, contentType, compression, listener);
+        if (!checkpointStore.startUpload(jobId, leaseOwner, upload.getUploadId())) {
+            upload.abort();
+            throw new IllegalStateException("Export lease lost before the upload started");
+        }
+        return upload;
     }
 
-    private void processExport(UUID jobId, S3StreamingUploader.StreamingUpload upload, ExportMetrics metrics) {
-        CsvFormatter formatter = new CsvFormatter();
+    /**
+     * Writes the export as a series of files, continuing after the consecutive files
+     * finished by earlier attempts. A finished file is recorded as soon as its object is
+     * complete, so the manifest can list it while the export is still running.
+     */
+    private RollingExportUpload openFiles(UUID jobId, String leaseOwner, Compression compression,
+                                          UserQuery query, @Nullable IdRange range) {
+        List<ExportFile> previous = checkpointStore.finishedFiles(jobId);
+        if (!previous.isEmpty()) {
+            ExportFile last = previous.get(previous.size() - 1);
+            log.info("Export resumed: jobId={}, afterFile={}, afterId={}", jobId, last.fileNumber(), last.maxId());
+        }
+        return new RollingExportUpload(
+                fileNumber -> generateFileKey(jobId, fileNumber, compression),
+                key -> s3StreamingUploader.startUpload(key, S3StreamingUploader.CSV_CONTENT_TYPE, compression, null),
+                file -> {
+                    if (!checkpointStore.saveFile(jobId, leaseOwner, file)) {
+                        log.warn("Finished file dropped, export lease lost: jobId={}, file={}", jobId, file.fileNumber());
+                    }
+                },
+                fileExecutor,
+                csvHeader(query),
+                maxFileRows,
+                maxFileMb * 1024 * 1024,
+                previous,
+                range);
+    }
 
+    private static byte[] csvHeader(UserQuery query) {
+        CsvRowEncoder encoder = new CsvRowEncoder(query);
+        encoder.encodeHeader();
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
         try {
-            upload.write(formatter.formatHeader());
+            encoder.drainTo(header::write);
         } catch (IOException e) {
-            throw new RuntimeException("Failed to write CSV header", e);
+            throw new UncheckedIOException(e);
+        }
+        return header.toByteArray();
+    }
+
+    /**
+     * Plain CSV is produced by the server via COPY whenever the database supports it;
+     * the JDBC cursor + {@link CsvRowEncoder} path is the fallback. Parquet row groups
+     * are built by a single writer, so Parquet always reads through one cursor. With
+     * {@code export.chunked.enabled} that single cursor is replaced by keyset chunks.
+     */
+    private QueryMode selectQueryMode(ExportFormat format) {
+        QueryMode cursor = chunkedEnabled ? QueryMode.CHUNKED_CURSOR : QueryMode.CURSOR;
+        if (format == ExportFormat.PARQUET) {
+            return cursor;
+        }
+        boolean copy = copyEnabled && format == ExportFormat.CSV && queryExecutor.supportsCopy();
+        if (partitionedExportRunner.isEnabled()) {
+            return copy ? QueryMode.PARALLEL_COPY : QueryMode.PARALLEL_CURSOR;
+        }
+        return copy ? QueryMode.COPY : cursor;
+    }
+
+    private ExportPipeline.ProgressListener progressListener(UUID jobId, ExportMetrics metrics, ExportUpload upload) {
+        ExportProgressTracker.Progress progress = progressTracker.track(jobId, metrics.getProcessedRows());
+        AtomicLong lastLogged = new AtomicLong();
+        return (pipeline, rows) -> {
+            progress.set(rows);
+            if (progressTracker.shouldLog(lastLogged.get(), rows)) {
+                lastLogged.set(rows);
+                log.info("Export progress: jobId={}, rows={}, speed={}, stages=[{} | {}]",
+                        jobId, rows, metrics.formatSpeed(), pipeline.describeOccupancy(), upload.describeOccupancy());
+            }
+        };
+    }
+
+    private void processExport(ExportPipeline pipeline, ExportMetrics metrics, ExportMeters.Stages stages,
+                               ExportFormat format, QueryMode queryMode, @Nullable IdRange exportRange,
+                               UserQuery query, @Nullable ExportCheckpoint resumeFrom, boolean writeHeader) {
+        if (format == ExportFormat.PARQUET) {
+            processParquet(pipeline, metrics, stages, queryMode, exportRange, query);
+            return;
         }
 
-        queryExecutor.streamUsers(rs -> {
+        CsvRowEncoder encoder = new CsvRowEncoder(query);
+        if (writeHeader) {
+            encoder.encodeHeader();
             try {
-                String line = formatter.formatRow(rs);
-                upload.write(line);
-                metrics.incrementRows();
+                encoder.drainTo(pipeline);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to write CSV header", e);
+            }
+        }
+
+        IdRange range = remainingRange(exportRange, resumeFrom);
+        if (range == null) {
+            return;
+        }
+
+        switch (queryMode) {
+            case CURSOR, CHUNKED_CURSOR -> processCursor(pipeline, metrics, stages, queryMode, encoder, range, query);
+            case COPY -> processCopy(pipeline, metrics, stages, range, query);
+            case PARALLEL_CURSOR -> processPartitioned(pipeline, metrics, stages, range, query, false);
+            case PARALLEL_COPY -> processPartitioned(pipeline, metrics, stages, range, query, true);
+        }
+    }
 
-                if (progressTracker.shouldUpdate(metrics.getProcessedRows())) {
-                    progressTracker.updateProgress(jobId, metrics.getProcessedRows());
-                    log.info("Export progress: jobId={}, rows={}, speed={}",
-                            jobId, metrics.getProcessedRows(), metrics.formatSpeed());
+    /**
+     * Ids still to export after {@code resumeFrom}. The upper bound is the watermark
+     * pinned when the job was created, so rows inserted while (or between attempts of)
+     * the export are left for the next delta.
+     */
+    private static @Nullable IdRange remainingRange(@Nullable IdRange range, @Nullable ExportCheckpoint resumeFrom) {
+        if (range == null || resumeFrom == null || resumeFrom.lastId() < range.minId()) {
+            return range;
+        }
+        return resumeFrom.lastId() < range.maxId() ? new IdRange(resumeFrom.lastId() + 1, range.maxId()) : null;
+    }
+
+    private void processCursor(ExportPipeline pipeline, ExportMetrics metrics, ExportMeters.Stages stages,
+                               QueryMode queryMode, CsvRowEncoder encoder, IdRange range, UserQuery query) {
+        StageClock clock = new StageClock(stages.fetch(), stages.encode());
+        scanUsers(rs -> {
+            try {
+                clock.rowStarted();
+                encoder.encodeRow(rs);
+                metrics.incrementRows();
+                clock.rowEncoded();
+                if (encoder.isFull()) {
+                    clock.record();
+                    long lastId = encoder.lastId();
+                    encoder.drainTo(pipeline);
+                    pipeline.checkpoint(lastId, metrics.getProcessedRows());
+                    clock.resume();
                 }
             } catch (Exception e) {
                 throw new RuntimeException("Failed to process row", e);
             }
-        });
+        }, queryMode, range, query);
+        clock.record();
+
+        try {
+            long lastId = encoder.lastId();
+            encoder.drainTo(pipeline);
+            pipeline.checkpoint(lastId, metrics.getProcessedRows());
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write CSV rows", e);
+        }
     }
 
-    private void completeJob(UUID jobId, String s3Key, ExportMetrics metrics, long uncompressedSize) {
-        ExportJob job = exportJobRepository.findById(jobId).orElseThrow();
-        job.setStatus(ExportStatus.COMPLETED);
-        job.setS3Key(s3Key);
-        job.setProcessedRecords(metrics.getProcessedRows());
-        job.setFinishedAt(Instant.now());
-        job.setFileSizeBytes(metrics.getBytesWritten());
-        job.setUncompressedSizeBytes(uncompressedSize);
-        job.calculateMetrics();
-        exportJobRepository.save(job);
+    /**
+     * COPY runs as a series of id slices; each slice boundary is a checkpoint.
+     */
+    private void processCopy(ExportPipeline pipeline, ExportMetrics metrics, ExportMeters.Stages stages,
+                             IdRange range, UserQuery query) {
+        CopyOutputStream out = new CopyOutputStream(pipeline, metrics.getProcessedRows());
+        int slices = (int) Math.min(MAX_COPY_SLICES, (range.span() + COPY_SLICE_IDS - 1) / COPY_SLICE_IDS);
+        for (IdRange slice : range.split(slices)) {
+            // The server encodes the CSV, so all of COPY counts as fetch time
+            long start = System.nanoTime();
+            metrics.addRows(queryExecutor.copyUsersCsv(out, slice, query));
+            stages.fetch().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            pipeline.checkpoint(slice.maxId(), metrics.getProcessedRows());
+        }
+    }
+
+    /**
+     * Parquet has no row-boundary checkpoints: the footer indexes every row group, so
+     * a failed Parquet export is retried from the start.
+     */
+    private void processParquet(ExportPipeline pipeline, ExportMetrics metrics, ExportMeters.Stages stages,
+                                QueryMode queryMode, @Nullable IdRange range, UserQuery query) {
+        try (ParquetUserWriter writer = new ParquetUserWriter(pipeline, query, parquetRowGroupMb * 1024L * 1024)) {
+            if (range == null) {
+                return;
+            }
+            StageClock clock = new StageClock(stages.fetch(), stages.encode());
+            scanUsers(rs -> {
+                try {
+                    clock.rowStarted();
+                    writer.write(rs);
+                    metrics.incrementRows();
+                    pipeline.recordRows(metrics.getProcessedRows());
+                    clock.rowEncoded();
+                    if (metrics.getProcessedRows() % PARQUET_METER_ROWS == 0) {
+                        clock.record();
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeException("Failed to process row", e);
+                }
+            }, queryMode, range, query);
+            clock.record();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write Parquet export", e);
+        }
+    }
+
+    /**
+     * Reads the rows in id order through one cursor, or in keyset chunks that return the
+     * connection to the pool between chunks.
+     */
+    private void scanUsers(Consumer<ResultSet> rowHandler, QueryMode queryMode, IdRange range, UserQuery query) {
+        if (queryMode == QueryMode.CHUNKED_CURSOR) {
+            queryExecutor.streamUsersChunked(rowHandler, range, query, chunkRows);
+        } else {
+            queryExecutor.streamUsers(rowHandler, range, query);
+        }
+    }
+
+    private void processPartitioned(ExportPipeline pipeline, ExportMetrics metrics, ExportMeters.Stages stages,
+                                    IdRange range, UserQuery query, boolean useCopy) {
+        try {
+            partitionedExportRunner.export(range, query, pipeline, useCopy, stages, (partition, rows) -> {
+                metrics.addRows(rows);
+                pipeline.checkpoint(partition.maxId(), metrics.getProcessedRows());
+            });
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write partitioned export", e);
+        }
+    }
+
+    private void completeJob(UUID jobId, String leaseOwner, String s3Key, int fileCount, ExportMetrics metrics,
+                             long uncompressedSize) {
+        ExportJob job = jobQueue.updateOwned(jobId, leaseOwner, owned -> {
+            owned.setStatus(ExportStatus.COMPLETED);
+            owned.setS3Key(s3Key);
+            owned.setFileCount(fileCount);
+            owned.setProcessedRecords(metrics.getProcessedRows());
+            // Every row in scope was exported, so this is the exact total
+            owned.setTotalRecords(metrics.getProcessedRows());
+            owned.setTotalRecordsEstimated(false);
+            owned.setFinishedAt(Instant.now());
+            owned.setFileSizeBytes(metrics.getBytesWritten());
+            owned.setUncompressedSizeBytes(uncompressedSize);
+            owned.calculateMetrics();
+        });
+        if (job == null) {
+            log.warn("Export finished after its lease was lost, left to the node that took over: jobId={}", jobId);
+            return;
+        }
+        checkpointStore.clear(jobId, leaseOwner);
+        eventHub.publish(job);
 
         progressTracker.updateMetrics(
                 jobId,
@@ -147,36 +891,180 @@ public class ExportService {
         return bytes + " B";
     }
 
-    private void handleError(UUID jobId, S3StreamingUploader.@Nullable StreamingUpload upload, Exception e) {
+    private void handleError(UUID jobId, String leaseOwner, @Nullable ExportPipeline pipeline,
+                             @Nullable ExportUpload upload, Exception e,
+                             BooleanSupplier leaseHeld) {
+        if (pipeline != null) {
+            pipeline.abort();
+        }
+        if (!holdsLease(jobId, leaseOwner, leaseHeld)) {
+            // Stopped on shutdown or lease loss; whoever claims the job next resumes it
+            log.warn("Export stopped without its lease: jobId={}", jobId);
+            if (upload != null) {
+                upload.release();
+            }
+            return;
+        }
         log.error("Export failed: jobId={}", jobId, e);
-        
+
         if (upload != null) {
-            upload.abort();
+            ExportCheckpoint checkpoint = upload.getLastCheckpoint();
+            if (checkpoint != null) {
+                // Keep the multipart upload (or finished files) so a retry can continue after the checkpoint
+                upload.release();
+                log.info("Export can be resumed: jobId={}, afterPart={}, afterId={}",
+                        jobId, checkpoint.partNumber(), checkpoint.lastId());
+            } else {
+                upload.abort();
+                checkpointStore.clear(jobId, leaseOwner);
+            }
         }
-        
-        ExportJob job = exportJobRepository.findById(jobId).orElse(null);
-        if (job != null) {
-            job.setStatus(ExportStatus.FAILED);
-            String errorMessage = e.getMessage();
-            job.setErrorMessage(truncateError(errorMessage != null ? errorMessage : "Unknown error"));
-            job.setFinishedAt(Instant.now());
-            exportJobRepository.save(job);
+
+        String errorMessage = e.getMessage();
+        failJob(jobId, leaseOwner, errorMessage != null ? errorMessage : "Unknown error");
+    }
+
+    /**
+     * Whether this attempt still owns the job: its worker has not stopped it and no other
+     * node has claimed it since, which the database knows before the next heartbeat does.
+     * A database that cannot be asked counts as a lost lease, which only leaves the job to
+     * be resumed.
+     */
+    private boolean holdsLease(UUID jobId, String leaseOwner, BooleanSupplier leaseHeld) {
+        if (!leaseHeld.getAsBoolean()) {
+            return false;
+        }
+        try {
+            return jobQueue.holdsLease(jobId, leaseOwner);
+        } catch (RuntimeException e) {
+            log.warn("Could not check the export lease: jobId={}", jobId, e);
+            return false;
+        }
+    }
+
+    /**
+     * Marks a job FAILED without running it, e.g. once it has used up its attempts. Does
+     * nothing once {@code leaseOwner} has lost the job's lease to another node.
+     */
+    public void failJob(UUID jobId, String leaseOwner, String errorMessage) {
+        ExportJob job = jobQueue.updateOwned(jobId, leaseOwner, owned -> {
+            owned.setStatus(ExportStatus.FAILED);
+            owned.setErrorMessage(truncateError(errorMessage));
+            owned.setFinishedAt(Instant.now());
+        });
+        if (job == null) {
+            log.warn("Export failure not recorded, lease lost: jobId={}", jobId);
+            return;
         }
+        eventHub.publish(job);
     }
 
     private String truncateError(String message) {
         return message.length() > 1000 ? message.substring(0, 1000) : message;
     }
 
+    /**
+     * Queues a failed export again; it resumes from its last checkpoint when the multipart
+     * upload is still available.
+     */
+    public void retryExport(UUID jobId) {
+        if (!jobQueue.requeue(jobId)) {
+            throw new IllegalStateException("Only failed exports can be retried");
+        }
+    }
+
     public @Nullable ExportJob getJob(UUID jobId) {
         return exportJobRepository.findById(jobId).orElse(null);
     }
 
-    public String getDownloadUrl(UUID jobId) {
+    /**
+     * Describes what the export covers; a delta links to the export it continues. A split
+     * export lists the files finished so far.
+     */
+    public ExportManifest getManifest(UUID jobId) {
+        ExportJob job = exportJobRepository.findById(jobId).orElseThrow();
+        List<ExportFile> files = checkpointStore.files(jobId);
+        if (!files.isEmpty()) {
+            return buildManifest(job, manifestKey(jobId), files.stream().map(ExportService::manifestFile).toList());
+        }
+        String s3Key = generateS3Key(jobId, formatOf(job), compressionOf(job));
+        List<ExportManifest.File> single = job.getStatus() == ExportStatus.COMPLETED
+                ? List.of(new ExportManifest.File(s3Key, orZero(job.getProcessedRecords()),
+                        orZero(job.getFileSizeBytes()), job.getFirstId(), job.getWatermarkId()))
+                : List.of();
+        return buildManifest(job, s3Key, single);
+    }
+
+    /**
+     * Stores the manifest of a split export next to its files.
+     *
+     * @return key of the manifest
+     */
+    private String writeManifest(ExportJob job, List<ExportFile> files) {
+        String key = manifestKey(job.getId());
+        ExportManifest manifest = buildManifest(job, key, files.stream().map(ExportService::manifestFile).toList());
+        s3PresignedUrlService.putObject(key, "application/json", jsonMapper.writeValueAsBytes(manifest));
+        log.info("Export manifest written: jobId={}, key={}, files={}", job.getId(), key, files.size());
+        return key;
+    }
+
+    private ExportManifest buildManifest(ExportJob job, String s3Key, List<ExportManifest.File> files) {
+        UUID baseJobId = job.getBaseJobId();
+        String baseS3Key = baseJobId != null
+                ? exportJobRepository.findById(baseJobId).map(ExportJob::getS3Key).orElse(null)
+                : null;
+        Instant since = job.getDeltaSince();
+        Instant watermarkCreatedAt = job.getWatermarkCreatedAt();
+        ExportType type = job.getExportType() != null ? job.getExportType() : ExportType.FULL;
+        UserQuery query = exportQuery(job);
+        Instant createdFrom = job.getCreatedFrom();
+        Instant createdTo = job.getCreatedTo();
+
+        return new ExportManifest(
+                job.getId(),
+                type.name(),
+                s3Key,
+                baseJobId,
+                baseS3Key,
+                since != null ? since.toString() : null,
+                job.getFirstId(),
+                job.getWatermarkId(),
+                watermarkCreatedAt != null ? watermarkCreatedAt.toString() : null,
+                UserColumn.formatList(query.columns()),
+                job.getIdFrom(),
+                job.getIdTo(),
+                createdFrom != null ? createdFrom.toString() : null,
+                createdTo != null ? createdTo.toString() : null,
+                files
+        );
+    }
+
+    private static ExportManifest.File manifestFile(ExportFile file) {
+        return new ExportManifest.File(file.s3Key(), file.rows(), file.sizeBytes(), file.minId(), file.maxId());
+    }
+
+    private static long orZero(@Nullable Long value) {
+        return value != null ? value : 0L;
+    }
+
+    /**
+     * Presigned URLs of every file of a completed export, so they can be fetched in
+     * parallel; for a split export {@code downloadUrl} is the manifest.
+     */
+    public ExportDownloadResponse getDownloadUrls(UUID jobId) {
         ExportJob job = exportJobRepository.findById(jobId).orElseThrow();
         if (job.getStatus() != ExportStatus.COMPLETED) {
             throw new IllegalStateException("Export not completed yet");
         }
-        return s3PresignedUrlService.generatePresignedGetUrl(job.getS3Key());
+        String downloadUrl = s3PresignedUrlService.generatePresignedGetUrl(job.getS3Key());
+        List<ExportFile> files = checkpointStore.files(jobId);
+        if (files.isEmpty()) {
+            return new ExportDownloadResponse(downloadUrl, null, List.of(new ExportDownloadResponse.File(
+                    job.getS3Key(), downloadUrl, orZero(job.getProcessedRecords()), orZero(job.getFileSizeBytes()))));
+        }
+        return new ExportDownloadResponse(downloadUrl, downloadUrl, files.stream()
+                .map(file -> new ExportDownloadResponse.File(file.s3Key(),
+                        s3PresignedUrlService.generatePresignedGetUrl(file.s3Key()), file.rows(), file.sizeBytes()))
+                .toList());
     }
 }
@@ -0,0 +1,57 @@
+package com.seft.learn.example.service;
+
+import com.seft.learn.example.service.export.ExportCheckpoint;
+import com.seft.learn.example.service.export.ExportMeters;
+import com.seft.learn.example.service.export.ExportSink;
+import org.jspecify.annotations.Nullable;
+
+import java.io.IOException;
+
+/**
+ * Where an export's encoded rows go: one multipart upload
+ * ({@link S3StreamingUploader.StreamingUpload}) or a series of them
+ * ({@link RollingExportUpload}).
+ */
+public interface ExportUpload extends ExportSink {
+
+    /**
+     * Expected number of rows in the export, used to size parts up front; 0 if unknown.
+     */
+    void expectRows(long rows);
+
+    /**
+     * Records compression time and part uploads in {@code stages} from now on.
+     */
+    void instrument(ExportMeters.Stages stages);
+
+    /**
+     * Point a later attempt can continue after, or {@code null} if it has to start over.
+     */
+    @Nullable ExportCheckpoint getLastCheckpoint();
+
+    /**
+     * Uploads what is left and completes the output.
+     *
+     * @return uploaded bytes
+     */
+    long complete() throws IOException;
+
+    long getUncompressedBytes();
+
+    /**
+     * Compressed bytes written so far, uploaded or still buffered.
+     */
+    long getCompressedBytes();
+
+    /**
+     * Stops without completing, keeping what {@link #getLastCheckpoint()} refers to.
+     */
+    void release();
+
+    /**
+     * Stops without completing and discards the unfinished output.
+     */
+    void abort();
+
+    String describeOccupancy();
+}
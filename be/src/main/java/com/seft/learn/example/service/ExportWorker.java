@@ -0,0 +1,149 @@
+package com.seft.learn.example.service;
+
+import com.seft.learn.example.service.export.ExportJobQueue;
+import com.seft.learn.example.service.export.ExportJobQueue.ClaimedJob;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.Nullable;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Runs exports claimed from the {@link ExportJobQueue}. Every node polls the queue and
+ * runs up to {@code export.queue.workers} jobs at a time, renewing their leases while
+ * they run; adding nodes adds export capacity. A job whose lease cannot be renewed has
+ * been taken over by another node and is stopped here.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ExportWorker {
+
+    private final ExportJobQueue jobQueue;
+    private final ExportService exportService;
+    @Qualifier("taskExecutor")
+    private final Executor taskExecutor;
+    private final String nodeId = nodeName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+    private final Map<UUID, RunningJob> running = new ConcurrentHashMap<>();
+    private volatile boolean stopping;
+
+    @Value("${export.queue.workers:2}")
+    private int workers = 2;
+
+    @Value("${export.queue.lease-ms:60000}")
+    private long leaseMs = 60_000;
+
+    @Value("${export.queue.max-attempts:5}")
+    private int maxAttempts = 5;
+
+    /**
+     * Claims jobs while this node has free workers.
+     */
+    @Scheduled(fixedDelayString = "${export.queue.poll-interval-ms:1000}")
+    public void poll() {
+        while (!stopping && running.size() < workers) {
+            ClaimedJob claimed = jobQueue.claimNext(nodeId, leaseMs);
+            if (claimed == null) {
+                return;
+            }
+            UUID jobId = claimed.jobId();
+            if (claimed.attempts() > maxAttempts) {
+                log.warn("Export abandoned after {} attempts: jobId={}", maxAttempts, jobId);
+                exportService.failJob(jobId, nodeId, "Export did not finish after " + maxAttempts + " attempts");
+                jobQueue.release(jobId, nodeId);
+                continue;
+            }
+
+            RunningJob job = new RunningJob();
+            running.put(jobId, job);
+            log.info("Claimed export: jobId={}, attempt={}, node={}", jobId, claimed.attempts(), nodeId);
+            try {
+                taskExecutor.execute(() -> run(jobId, job));
+            } catch (RejectedExecutionException e) {
+                running.remove(jobId);
+                jobQueue.release(jobId, nodeId);
+                log.warn("No export thread free, job left in the queue: jobId={}", jobId);
+                return;
+            }
+        }
+    }
+
+    private void run(UUID jobId, RunningJob job) {
+        job.thread = Thread.currentThread();
+        try {
+            exportService.runExport(jobId, nodeId, () -> !stopping && !job.leaseLost);
+        } finally {
+            job.thread = null;
+            running.remove(jobId);
+            // Clears the interrupt a lost lease or shutdown may have left on the pooled thread
+            Thread.interrupted();
+            if (!job.leaseLost) {
+                jobQueue.release(jobId, nodeId);
+            }
+        }
+    }
+
+    /**
+     * Renews the leases of the running jobs, stopping any whose lease was lost.
+     */
+    @Scheduled(fixedDelayString = "${export.queue.heartbeat-interval-ms:15000}")
+    public void heartbeat() {
+        running.forEach((jobId, job) -> {
+            boolean renewed;
+            try {
+                renewed = jobQueue.renewLease(jobId, nodeId, leaseMs);
+            } catch (RuntimeException e) {
+                // The lease may still be valid; retried on the next heartbeat
+                log.warn("Failed to renew export lease: jobId={}", jobId, e);
+                return;
+            }
+            if (!renewed) {
+                log.warn("Export lease lost, stopping the job: jobId={}", jobId);
+                job.leaseLost = true;
+                job.interrupt();
+            }
+        });
+    }
+
+    /**
+     * Stops the running jobs without failing them; their leases are released so another
+     * node resumes them from the last checkpoint.
+     */
+    @PreDestroy
+    public void shutdown() {
+        stopping = true;
+        running.values().forEach(RunningJob::interrupt);
+    }
+
+    private static String nodeName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "node";
+        }
+    }
+
+    private static final class RunningJob {
+
+        volatile @Nullable Thread thread;
+        volatile boolean leaseLost;
+
+        void interrupt() {
+            Thread current = thread;
+            if (current != null) {
+                current.interrupt();
+            }
+        }
+    }
+}
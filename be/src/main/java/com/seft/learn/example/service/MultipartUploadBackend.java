@@ -0,0 +1,38 @@
+package com.seft.learn.example.service;
+
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.ListPartsRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The S3 multipart calls a {@link S3StreamingUploader.StreamingUpload} makes, selected
+ * by {@code export.upload.backend}. Only part uploads are asynchronous; the other
+ * calls are made once per export.
+ */
+interface MultipartUploadBackend {
+
+    /**
+     * @return the upload id
+     */
+    String createMultipartUpload(CreateMultipartUploadRequest request);
+
+    /**
+     * @throws software.amazon.awssdk.services.s3.model.NoSuchUploadException if the upload is gone
+     */
+    void listParts(ListPartsRequest request);
+
+    /**
+     * Uploads {@code part} without copying its buffers.
+     *
+     * @return the ETag of the uploaded part
+     */
+    CompletableFuture<String> uploadPart(UploadPartRequest request, PartBuffer.Part part);
+
+    void completeMultipartUpload(CompleteMultipartUploadRequest request);
+
+    void abortMultipartUpload(AbortMultipartUploadRequest request);
+}
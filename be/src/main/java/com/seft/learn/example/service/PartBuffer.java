@@ -0,0 +1,178 @@
+package com.seft.learn.example.service;
+
+import org.jspecify.annotations.Nullable;
+import software.amazon.awssdk.http.ContentStreamProvider;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Buffers the multipart upload part being written, in chunks drawn from a
+ * {@link PartBufferPool}. A finished part is {@link #detach() detached} and uploaded
+ * straight from its chunks, without copying them into one array, while writing goes
+ * on into new chunks.
+ */
+class PartBuffer extends OutputStream {
+
+    private final PartBufferPool pool;
+    private List<ByteBuffer> chunks = new ArrayList<>();
+    private int size;
+
+    PartBuffer(PartBufferPool pool) {
+        this.pool = pool;
+    }
+
+    int size() {
+        return size;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        writableChunk().put((byte) b);
+        size++;
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length) throws IOException {
+        while (length > 0) {
+            ByteBuffer chunk = writableChunk();
+            int n = Math.min(length, chunk.remaining());
+            chunk.put(data, offset, n);
+            offset += n;
+            length -= n;
+            size += n;
+        }
+    }
+
+    private ByteBuffer writableChunk() throws IOException {
+        if (!chunks.isEmpty()) {
+            ByteBuffer last = chunks.get(chunks.size() - 1);
+            if (last.hasRemaining()) {
+                return last;
+            }
+        }
+        ByteBuffer chunk = pool.acquire();
+        chunks.add(chunk);
+        return chunk;
+    }
+
+    /**
+     * Hands over the bytes written so far as a part; the buffer continues empty.
+     */
+    Part detach() {
+        List<ByteBuffer> written = new ArrayList<>(chunks.size());
+        for (ByteBuffer chunk : chunks) {
+            written.add(chunk.flip());
+        }
+        Part part = new Part(pool, written, size);
+        chunks = new ArrayList<>();
+        size = 0;
+        return part;
+    }
+
+    /**
+     * Returns the chunks of a part that will not be uploaded.
+     */
+    void release() {
+        detach().release();
+    }
+
+    /**
+     * Bytes of one part, held until {@link #release()}.
+     */
+    static final class Part {
+
+        private final PartBufferPool pool;
+        private final List<ByteBuffer> chunks;
+        private final int size;
+
+        private Part(PartBufferPool pool, List<ByteBuffer> chunks, int size) {
+            this.pool = pool;
+            this.chunks = chunks;
+            this.size = size;
+        }
+
+        int size() {
+            return size;
+        }
+
+        /**
+         * Replays the part; each call starts a fresh stream, so the SDK can retry the request.
+         */
+        ContentStreamProvider contentProvider() {
+            return () -> new ChunksInputStream(chunks);
+        }
+
+        /**
+         * Read-only views of the part's buffers, positioned at its bytes.
+         */
+        ByteBuffer[] byteBuffers() {
+            ByteBuffer[] views = new ByteBuffer[chunks.size()];
+            for (int i = 0; i < views.length; i++) {
+                views[i] = chunks.get(i).asReadOnlyBuffer();
+            }
+            return views;
+        }
+
+        void release() {
+            for (ByteBuffer chunk : chunks) {
+                pool.release(chunk);
+            }
+            chunks.clear();
+        }
+    }
+
+    private static final class ChunksInputStream extends InputStream {
+
+        private final List<ByteBuffer> chunks;
+        private int index;
+
+        ChunksInputStream(List<ByteBuffer> written) {
+            this.chunks = new ArrayList<>(written.size());
+            for (ByteBuffer chunk : written) {
+                this.chunks.add(chunk.duplicate());
+            }
+        }
+
+        @Override
+        public int read() {
+            ByteBuffer chunk = current();
+            return chunk != null ? chunk.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            ByteBuffer chunk = current();
+            if (chunk == null) {
+                return -1;
+            }
+            int n = Math.min(len, chunk.remaining());
+            chunk.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            ByteBuffer chunk = current();
+            return chunk != null ? chunk.remaining() : 0;
+        }
+
+        private @Nullable ByteBuffer current() {
+            while (index < chunks.size()) {
+                ByteBuffer chunk = chunks.get(index);
+                if (chunk.hasRemaining()) {
+                    return chunk;
+                }
+                index++;
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.seft.learn.example.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Node-wide pool of direct {@link ByteBuffer} chunks that multipart upload parts are
+ * assembled in. The pool never holds more than {@code export.memory.budget-mb}; a writer
+ * that needs a chunk while every chunk is in use blocks until an uploaded part returns
+ * its chunks, so memory stays flat however many exports run.
+ *
+ * <p>The wait has no timeout: a stopped export (lost lease, shutdown, failure) wakes its
+ * writer with an interrupt, see {@code ExportPipeline#abort}. Every running export must be
+ * able to fill a 5 MB part, so a writer still waiting after {@link #WARN_AFTER_MS} is
+ * logged as a sign the budget is too small for the exports running on the node.
+ */
+@Component
+@Slf4j
+public class PartBufferPool {
+
+    private static final long WARN_AFTER_MS = 30_000;
+
+    private final int chunkSize;
+    private final int maxChunks;
+    private final Semaphore permits;
+    private final ConcurrentLinkedQueue<ByteBuffer> freeChunks = new ConcurrentLinkedQueue<>();
+
+    public PartBufferPool(@Value("${export.memory.budget-mb:256}") int budgetMb,
+                          @Value("${export.memory.chunk-size-kb:1024}") int chunkSizeKb) {
+        this.chunkSize = Math.max(chunkSizeKb, 64) * 1024;
+        this.maxChunks = Math.max((int) (budgetMb * 1024L * 1024 / chunkSize), 1);
+        this.permits = new Semaphore(maxChunks);
+    }
+
+    public int chunkSize() {
+        return chunkSize;
+    }
+
+    public long budgetBytes() {
+        return maxChunks * (long) chunkSize;
+    }
+
+    /**
+     * Takes a cleared chunk, allocating one while the budget allows and waiting for a
+     * released one otherwise.
+     *
+     * @throws InterruptedIOException if interrupted while waiting
+     */
+    public ByteBuffer acquire() throws InterruptedIOException {
+        try {
+            long waitedMs = 0;
+            while (!permits.tryAcquire(WARN_AFTER_MS, TimeUnit.MILLISECONDS)) {
+                waitedMs += WARN_AFTER_MS;
+                log.warn("Export memory budget exhausted, writer waiting for {}ms: {}; "
+                        + "raise export.memory.budget-mb or run fewer exports per node", waitedMs, describeUsage());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for an export buffer");
+        }
+        ByteBuffer chunk = freeChunks.poll();
+        if (chunk == null) {
+            return ByteBuffer.allocateDirect(chunkSize);
+        }
+        chunk.clear();
+        return chunk;
+    }
+
+    public void release(ByteBuffer chunk) {
+        freeChunks.offer(chunk);
+        permits.release();
+    }
+
+    /**
+     * Whether a writer asking for a chunk right now would have to wait.
+     */
+    public boolean isExhausted() {
+        return permits.availablePermits() == 0;
+    }
+
+    public String describeUsage() {
+        int inUse = maxChunks - permits.availablePermits();
+        return String.format("buffers=%d/%d MB", inUse * (long) chunkSize / (1024 * 1024),
+                maxChunks * (long) chunkSize / (1024 * 1024));
+    }
+}
@@ -0,0 +1,62 @@
+package com.seft.learn.example.service;
+
+/**
+ * Picks the size of the next multipart part. Small exports keep S3's 5 MB minimum;
+ * larger ones get bigger parts, so there are fewer {@code UploadPart} requests and the
+ * 10,000-part limit is never reached.
+ *
+ * <p>Two rules apply and the larger wins: parts are sized for about
+ * {@value #TARGET_PART_COUNT} parts over the expected object size (extrapolated from
+ * the bytes per row so far and the expected row count), and, for when that estimate
+ * is missing or too low, the size doubles every {@value #PARTS_PER_DOUBLING} parts.
+ */
+class PartSizer {
+
+    static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+    static final int MAX_PART_COUNT = 10_000;
+
+    private static final int TARGET_PART_COUNT = 1_000;
+    private static final int PARTS_PER_DOUBLING = 1_000;
+    private static final int MB = 1024 * 1024;
+
+    private final int maxPartSize;
+    private final long partBudget;
+
+    /**
+     * @param maxPartSize largest part to cut
+     * @param partBudget  share of the node's buffer budget one part in flight may take
+     */
+    PartSizer(int maxPartSize, long partBudget) {
+        this.maxPartSize = Math.max(maxPartSize, MIN_PART_SIZE);
+        this.partBudget = partBudget;
+    }
+
+    /**
+     * @param partNumber    number of the part about to be filled
+     * @param bytesSoFar    bytes uploaded or buffered so far
+     * @param rowsSoFar     rows those bytes hold, or 0 if unknown
+     * @param expectedRows  expected rows of the whole export, or 0 if unknown
+     */
+    int partSize(int partNumber, long bytesSoFar, long rowsSoFar, long expectedRows) {
+        long size = (long) MIN_PART_SIZE << Math.min((partNumber - 1) / PARTS_PER_DOUBLING, 10);
+
+        if (rowsSoFar > 0 && expectedRows > rowsSoFar) {
+            double bytesPerRow = (double) bytesSoFar / rowsSoFar;
+            long expectedBytes = (long) (bytesPerRow * expectedRows);
+            size = Math.max(size, expectedBytes / TARGET_PART_COUNT);
+        }
+
+        // Whole MBs; never more than the memory a single part may take
+        size = (size + MB - 1) / MB * MB;
+        return (int) Math.min(Math.max(size, MIN_PART_SIZE), maxPartSize);
+    }
+
+    /**
+     * Size a resumable upload cuts a part at when no checkpoint comes, for rows larger
+     * than a part: up to {@code maxParts} times {@code partSize}, but no more than the
+     * part's share of the buffer budget, and never less than {@code partSize}.
+     */
+    long uncheckpointedPartSize(int partSize, int maxParts) {
+        return Math.max(partSize, Math.min((long) partSize * maxParts, partBudget));
+    }
+}
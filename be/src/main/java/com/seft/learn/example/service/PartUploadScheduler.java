@@ -0,0 +1,149 @@
+package com.seft.learn.example.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.jspecify.annotations.Nullable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * Bounds the part uploads of every {@link S3StreamingUploader.StreamingUpload} on the
+ * node. Each upload gets a {@link Window}: a sliding window of in-flight parts, capped
+ * per upload and node-wide, where a slot is freed as soon as any of its parts
+ * finishes, so one slow part never holds up the parts queued behind it.
+ */
+@Component
+public class PartUploadScheduler {
+
+    private final Semaphore globalSlots;
+    private final int maxInFlight;
+    private final int maxInFlightPerUpload;
+
+    public PartUploadScheduler(@Value("${export.upload.max-in-flight:16}") int maxInFlight,
+                               @Value("${export.upload.max-in-flight-per-upload:4}") int maxInFlightPerUpload,
+                               MeterRegistry registry) {
+        this.maxInFlight = Math.max(maxInFlight, 1);
+        this.maxInFlightPerUpload = Math.max(Math.min(maxInFlightPerUpload, this.maxInFlight), 1);
+        this.globalSlots = new Semaphore(this.maxInFlight, true);
+        Gauge.builder("export.parts.in.flight", this, PartUploadScheduler::inFlight)
+                .description("Multipart parts being uploaded by this node")
+                .register(registry);
+    }
+
+    public Window openWindow() {
+        return new Window();
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Parts in flight across all uploads of the node.
+     */
+    public int inFlight() {
+        return maxInFlight - globalSlots.availablePermits();
+    }
+
+    /**
+     * In-flight parts of one upload.
+     */
+    public final class Window {
+
+        private final Semaphore slots = new Semaphore(maxInFlightPerUpload);
+        private final Set<CompletableFuture<?>> inFlight = ConcurrentHashMap.newKeySet();
+        private volatile @Nullable Throwable failure;
+        private long waitNanos;
+
+        private Window() {
+        }
+
+        /**
+         * Starts an upload through {@code start} once this upload and the node both have a
+         * free slot, blocking the caller until then. The slot is held until the returned
+         * future completes.
+         *
+         * @throws IOException if an earlier part of this upload failed
+         */
+        public <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> start) throws IOException {
+            checkFailure();
+            long waitStart = System.nanoTime();
+            try {
+                slots.acquire();
+                try {
+                    globalSlots.acquire();
+                } catch (InterruptedException e) {
+                    slots.release();
+                    throw e;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for an upload slot");
+            } finally {
+                waitNanos += System.nanoTime() - waitStart;
+            }
+
+            CompletableFuture<T> future;
+            try {
+                future = start.get();
+            } catch (RuntimeException e) {
+                globalSlots.release();
+                slots.release();
+                throw e;
+            }
+            inFlight.add(future);
+            future.whenComplete((result, e) -> {
+                if (e != null && failure == null) {
+                    Throwable cause = e.getCause();
+                    failure = e instanceof CompletionException && cause != null ? cause : e;
+                }
+                inFlight.remove(future);
+                globalSlots.release();
+                slots.release();
+            });
+            return future;
+        }
+
+        /**
+         * Waits for every part submitted so far.
+         *
+         * @throws IOException if any part failed
+         */
+        public void awaitAll() throws IOException {
+            try {
+                CompletableFuture.allOf(inFlight.toArray(new CompletableFuture[0])).join();
+            } catch (CompletionException | CancellationException e) {
+                // recorded as the failure below
+            }
+            checkFailure();
+        }
+
+        private void checkFailure() throws IOException {
+            Throwable failed = failure;
+            if (failed != null) {
+                throw new IOException("Part upload failed", failed);
+            }
+        }
+
+        public int inFlight() {
+            return maxInFlightPerUpload - slots.availablePermits();
+        }
+
+        public String describeOccupancy() {
+            return String.format("upload in-flight=%d/%d node=%d/%d blocked=%dms",
+                    inFlight(), maxInFlightPerUpload,
+                    PartUploadScheduler.this.inFlight(), maxInFlight,
+                    waitNanos / 1_000_000);
+        }
+    }
+}
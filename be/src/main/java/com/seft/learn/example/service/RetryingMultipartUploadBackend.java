@@ -0,0 +1,114 @@
+package com.seft.learn.example.service;
+
+import lombok.extern.slf4j.Slf4j;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.ListPartsRequest;
+import software.amazon.awssdk.services.s3.model.NoSuchUploadException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Retries failed part uploads with exponential backoff and jitter, on top of the
+ * SDK's own request retries, so one unlucky part does not fail a long export. The
+ * part's buffers are replayed for every attempt. The other calls pass straight through.
+ */
+@Slf4j
+class RetryingMultipartUploadBackend implements MultipartUploadBackend {
+
+    private static final long MAX_BACKOFF_MS = 30_000;
+
+    private final MultipartUploadBackend delegate;
+    private final int maxRetries;
+    private final long baseBackoffMs;
+
+    RetryingMultipartUploadBackend(MultipartUploadBackend delegate, int maxRetries, long baseBackoffMs) {
+        this.delegate = delegate;
+        this.maxRetries = Math.max(maxRetries, 0);
+        this.baseBackoffMs = Math.max(baseBackoffMs, 1);
+    }
+
+    @Override
+    public String createMultipartUpload(CreateMultipartUploadRequest request) {
+        return delegate.createMultipartUpload(request);
+    }
+
+    @Override
+    public void listParts(ListPartsRequest request) {
+        delegate.listParts(request);
+    }
+
+    @Override
+    public CompletableFuture<String> uploadPart(UploadPartRequest request, PartBuffer.Part part) {
+        return uploadPart(request, part, 0);
+    }
+
+    private CompletableFuture<String> uploadPart(UploadPartRequest request, PartBuffer.Part part, int retry) {
+        CompletableFuture<String> attempt;
+        try {
+            attempt = delegate.uploadPart(request, part);
+        } catch (RuntimeException e) {
+            attempt = CompletableFuture.failedFuture(e);
+        }
+        return attempt.handle((eTag, e) -> {
+            if (e == null) {
+                return CompletableFuture.completedFuture(eTag);
+            }
+            Throwable cause = e instanceof CompletionException && e.getCause() != null
+                    ? Objects.requireNonNull(e.getCause())
+                    : e;
+            if (retry >= maxRetries || !isRetryable(cause)) {
+                return CompletableFuture.<String>failedFuture(cause);
+            }
+            long backoffMs = backoffMs(retry);
+            log.warn("Part {} upload failed, retry {}/{} in {}ms: {}",
+                    request.partNumber(), retry + 1, maxRetries, backoffMs, cause.toString());
+            return CompletableFuture.runAsync(() -> { },
+                            CompletableFuture.delayedExecutor(backoffMs, TimeUnit.MILLISECONDS))
+                    .thenCompose(ignored -> uploadPart(request, part, retry + 1));
+        }).thenCompose(result -> result);
+    }
+
+    /**
+     * A random wait between half and all of {@code base * 2^retry}, capped.
+     */
+    private long backoffMs(int retry) {
+        long ceiling = Math.min(MAX_BACKOFF_MS, baseBackoffMs << Math.min(retry, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1);
+    }
+
+    /**
+     * Client errors other than timeouts and throttling will fail again; a missing
+     * upload means it was aborted.
+     */
+    private static boolean isRetryable(Throwable e) {
+        if (e instanceof NoSuchUploadException) {
+            return false;
+        }
+        if (e instanceof S3Exception s3) {
+            int status = s3.statusCode();
+            return status >= 500 || status == 408 || status == 429;
+        }
+        return e instanceof SdkException || e instanceof IOException || e instanceof UncheckedIOException;
+    }
+
+    @Override
+    public void completeMultipartUpload(CompleteMultipartUploadRequest request) {
+        delegate.completeMultipartUpload(request);
+    }
+
+    @Override
+    public void abortMultipartUpload(AbortMultipartUploadRequest request) {
+        delegate.abortMultipartUpload(request);
+    }
+}
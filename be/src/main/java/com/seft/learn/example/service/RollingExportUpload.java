@@ -0,0 +1,316 @@
+package com.seft.learn.example.service;
+
+import com.seft.learn.example.service.export.ExportCheckpoint;
+import com.seft.learn.example.service.export.ExportFile;
+import com.seft.learn.example.service.export.ExportMeters;
+import com.seft.learn.example.service.export.IdRange;
+import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * Writes an export as a series of objects. At the first row boundary after the current
+ * file reaches {@code maxRows} rows or {@code maxBytes} uploaded bytes, that file is
+ * completed in the background and writing goes on into the next one, so the last parts
+ * of one file upload while the next is being encoded. Every file starts with
+ * {@code header}, and is reported to the {@link FileListener} once its object is complete.
+ *
+ * <p>Finished files are the resume points: the parts of an unfinished file are not kept,
+ * and a later attempt continues after the last of the consecutive finished files. In
+ * {@link #getLastCheckpoint()}, {@code partNumber} is the number of that file.
+ */
+@Slf4j
+public class RollingExportUpload implements ExportUpload {
+
+    private final IntFunction<String> fileKeys;
+    private final Function<String, ExportUpload> opener;
+    private final FileListener listener;
+    private final Executor completionExecutor;
+    private final byte[] header;
+    private final long maxRows;
+    private final long maxBytes;
+    private final @Nullable Long scopeMaxId;
+
+    // Finished files by number, including those of earlier attempts
+    private final TreeMap<Integer, ExportFile> finished = new TreeMap<>();
+    private final List<CompletableFuture<ExportFile>> completing = new ArrayList<>();
+
+    private ExportUpload current;
+    private int fileNumber;
+    private long fileStartRows;
+    private @Nullable Long fileMinId;
+    private long rows;
+    private long handedOffUncompressedBytes;
+    private long handedOffCompressedBytes;
+    private boolean open;
+    private long expectedRows;
+    private ExportMeters.@Nullable Stages stages;
+
+    /**
+     * @param fileKeys       object key of each file number
+     * @param opener         starts the multipart upload of a file
+     * @param previousFiles  consecutive files finished by earlier attempts, continued after
+     * @param range          ids in scope, {@code null} if nothing is
+     */
+    public RollingExportUpload(IntFunction<String> fileKeys,
+                               Function<String, ExportUpload> opener,
+                               FileListener listener, Executor completionExecutor, byte[] header,
+                               long maxRows, long maxBytes, List<ExportFile> previousFiles,
+                               @Nullable IdRange range) {
+        this.fileKeys = fileKeys;
+        this.opener = opener;
+        this.listener = listener;
+        this.completionExecutor = completionExecutor;
+        this.header = header;
+        this.maxRows = maxRows;
+        this.maxBytes = maxBytes;
+        this.scopeMaxId = range != null ? range.maxId() : null;
+
+        Long lastMaxId = null;
+        for (ExportFile file : previousFiles) {
+            finished.put(file.fileNumber(), file);
+            rows += file.rows();
+            handedOffUncompressedBytes += file.uncompressedBytes();
+            handedOffCompressedBytes += file.sizeBytes();
+            lastMaxId = file.maxId();
+        }
+        this.fileNumber = previousFiles.size() + 1;
+        this.fileStartRows = rows;
+        this.fileMinId = lastMaxId != null ? Long.valueOf(lastMaxId + 1) : range != null ? Long.valueOf(range.minId()) : null;
+        this.current = openFile();
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length) throws IOException {
+        current.write(data, offset, length);
+    }
+
+    /**
+     * Moves on to the next file here once the current one is over a threshold.
+     */
+    @Override
+    public void checkpoint(long lastId, long rows) throws IOException {
+        this.rows = rows;
+        current.checkpoint(lastId, rows);
+        long fileRows = rows - fileStartRows;
+        boolean full = (maxRows > 0 && fileRows >= maxRows)
+                || (maxBytes > 0 && current.getCompressedBytes() >= maxBytes);
+        if (fileRows > 0 && full) {
+            checkCompleting();
+            completeInBackground(lastId);
+            fileNumber++;
+            fileStartRows = rows;
+            fileMinId = lastId + 1;
+            current = openFile();
+        }
+    }
+
+    @Override
+    public void expectRows(long rows) {
+        this.expectedRows = rows;
+        current.expectRows(fileExpectedRows());
+    }
+
+    @Override
+    public void instrument(ExportMeters.Stages stages) {
+        this.stages = stages;
+        current.instrument(stages);
+    }
+
+    /**
+     * Finishes the last file, or drops it when it has no rows and is not the only file,
+     * and waits for every file to complete.
+     *
+     * @return uploaded bytes of all files, including those of earlier attempts
+     * @throws IOException if any file failed to upload
+     */
+    @Override
+    public long complete() throws IOException {
+        if (rows > fileStartRows || fileNumber == 1) {
+            completeInBackground(scopeMaxId);
+        } else {
+            open = false;
+            current.abort();
+        }
+        try {
+            CompletableFuture.allOf(completing.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            throw asIOException(e);
+        }
+        synchronized (finished) {
+            return finished.values().stream().mapToLong(ExportFile::sizeBytes).sum();
+        }
+    }
+
+    @Override
+    public long getUncompressedBytes() {
+        return handedOffUncompressedBytes + (open ? current.getUncompressedBytes() : 0);
+    }
+
+    @Override
+    public long getCompressedBytes() {
+        return handedOffCompressedBytes + (open ? current.getCompressedBytes() : 0);
+    }
+
+    /**
+     * Finished files of the export so far, in order.
+     */
+    public List<ExportFile> getFiles() {
+        synchronized (finished) {
+            return List.copyOf(finished.values());
+        }
+    }
+
+    /**
+     * Resume point after the last of the consecutive finished files, once the files still
+     * completing have settled.
+     */
+    @Override
+    public @Nullable ExportCheckpoint getLastCheckpoint() {
+        awaitCompleting();
+        ExportCheckpoint checkpoint = null;
+        long rowsSoFar = 0;
+        long uncompressed = 0;
+        long compressed = 0;
+        synchronized (finished) {
+            int expected = 1;
+            for (ExportFile file : finished.values()) {
+                Long maxId = file.maxId();
+                if (file.fileNumber() != expected++ || maxId == null) {
+                    break;
+                }
+                rowsSoFar += file.rows();
+                uncompressed += file.uncompressedBytes();
+                compressed += file.sizeBytes();
+                checkpoint = new ExportCheckpoint(file.fileNumber(), maxId, rowsSoFar, uncompressed, compressed);
+            }
+        }
+        return checkpoint;
+    }
+
+    /**
+     * Aborts the unfinished file and lets the files already handed off finish; those are
+     * what a later attempt continues after.
+     */
+    @Override
+    public void release() {
+        abort();
+    }
+
+    @Override
+    public void abort() {
+        if (open) {
+            open = false;
+            current.abort();
+        }
+        awaitCompleting();
+    }
+
+    @Override
+    public String describeOccupancy() {
+        long pending = completing.stream().filter(f -> !f.isDone()).count();
+        return current.describeOccupancy() + " file=" + fileNumber + " completing=" + pending;
+    }
+
+    private ExportUpload openFile() {
+        ExportUpload upload = opener.apply(fileKeys.apply(fileNumber));
+        open = true;
+        ExportMeters.Stages meters = stages;
+        if (meters != null) {
+            upload.instrument(meters);
+        }
+        upload.expectRows(fileExpectedRows());
+        try {
+            upload.write(header, 0, header.length);
+        } catch (IOException e) {
+            upload.abort();
+            throw new UncheckedIOException("Failed to write export file header", e);
+        }
+        return upload;
+    }
+
+    private long fileExpectedRows() {
+        return maxRows > 0 ? Math.min(expectedRows, maxRows) : expectedRows;
+    }
+
+    private void completeInBackground(@Nullable Long maxId) {
+        ExportUpload upload = current;
+        int number = fileNumber;
+        String key = fileKeys.apply(number);
+        long fileRows = rows - fileStartRows;
+        Long minId = fileMinId;
+        handedOffUncompressedBytes += upload.getUncompressedBytes();
+        handedOffCompressedBytes += upload.getCompressedBytes();
+        open = false;
+
+        completing.add(CompletableFuture.supplyAsync(() -> {
+            try {
+                long size = upload.complete();
+                ExportFile file = new ExportFile(number, key, fileRows, size, upload.getUncompressedBytes(), minId, maxId);
+                listener.onFileCompleted(file);
+                synchronized (finished) {
+                    finished.put(number, file);
+                }
+                log.info("Export file completed: key={}, rows={}, bytes={}, ids={}..{}", key, fileRows, size, minId, maxId);
+                return file;
+            } catch (IOException e) {
+                upload.abort();
+                throw new UncheckedIOException("Failed to complete export file " + key, e);
+            } catch (RuntimeException e) {
+                upload.abort();
+                throw e;
+            }
+        }, completionExecutor));
+    }
+
+    /**
+     * Fails the export as soon as a file handed off earlier failed to complete.
+     */
+    private void checkCompleting() throws IOException {
+        for (CompletableFuture<ExportFile> file : completing) {
+            if (file.isCompletedExceptionally()) {
+                try {
+                    file.join();
+                } catch (CompletionException e) {
+                    throw asIOException(e);
+                }
+            }
+        }
+    }
+
+    private void awaitCompleting() {
+        for (CompletableFuture<ExportFile> file : completing) {
+            try {
+                file.join();
+            } catch (CompletionException e) {
+                // Reported by complete(); the file is simply not a resume point
+            }
+        }
+    }
+
+    private static IOException asIOException(CompletionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof UncheckedIOException io) {
+            return io.getCause();
+        }
+        return new IOException("Export file upload failed", cause != null ? cause : e);
+    }
+
+    @FunctionalInterface
+    public interface FileListener {
+        /**
+         * Called once the object of {@code file} is complete; files may complete out of order.
+         */
+        void onFileCompleted(ExportFile file);
+    }
+}
@@ -5,6 +5,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.jspecify.annotations.Nullable;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.*;
 import software.amazon.awssdk.services.s3.presigner.S3Presigner;
@@ -188,6 +189,18 @@ public class S3PresignedUrlService {
 		log.info("Configured CORS for bucket {}", bucketName);
 	}
 
+	/**
+	 * Uploads a small object in one request, e.g. an export manifest.
+	 */
+	public void putObject(String key, String contentType, byte[] content) {
+		s3Client.putObject(PutObjectRequest.builder()
+						.bucket(bucketName)
+						.key(key)
+						.contentType(contentType)
+						.build(),
+				RequestBody.fromBytes(content));
+	}
+
 	public List<S3Object> listFiles() {
 		ListObjectsV2Response response = s3Client.listObjectsV2(
 				ListObjectsV2Request.builder().bucket(bucketName).build());
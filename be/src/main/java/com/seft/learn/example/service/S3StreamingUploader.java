@@ -1,47 +1,93 @@
 package com.seft.learn.example.service;
 
+import com.seft.learn.example.entity.ExportJob.Compression;
+import com.seft.learn.example.service.compression.CompressionCodec;
+import com.seft.learn.example.service.compression.GzipCodec;
+import com.seft.learn.example.service.compression.Lz4Codec;
+import com.seft.learn.example.service.compression.ZstdCodec;
+import com.seft.learn.example.service.export.ExportCheckpoint;
+import com.seft.learn.example.service.export.ExportMeters;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.jspecify.annotations.Nullable;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
-import software.amazon.awssdk.core.sync.RequestBody;
-import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.*;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
+import java.util.Locale;
+import java.util.TreeMap;
 import java.util.concurrent.*;
-import org.slf4j.MDC;
-import java.util.zip.GZIPOutputStream;
 
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class S3StreamingUploader {
 
-    private final S3Client s3Client;
+    private final SyncMultipartUploadBackend syncBackend;
+    private final AsyncMultipartUploadBackend asyncBackend;
+    private final PartBufferPool bufferPool;
+    private final PartUploadScheduler uploadScheduler;
+    @Qualifier("exportCompressionExecutor")
+    private final Executor compressionExecutor;
 
     @Value("${aws.s3.bucket}")
     private String bucketName = "";
 
-    private static final int PART_SIZE = 5 * 1024 * 1024; // 5MB minimum
-    private static final int MAX_CONCURRENT_UPLOADS = 4;
+    /**
+     * {@code sync} (blocking {@code S3Client}, a thread per part in flight) or
+     * {@code async} ({@code S3AsyncClient}, no thread held while a part uploads).
+     */
+    @Value("${export.upload.backend:sync}")
+    private String backend = "sync";
+
+    @Value("${export.upload.max-part-size-mb:64}")
+    private int maxPartSizeMb = 64;
+
+    @Value("${export.upload.part-retries:4}")
+    private int partRetries = 4;
+
+    @Value("${export.upload.retry-backoff-ms:500}")
+    private long retryBackoffMs = 500;
+
+    @Value("${export.compression.parallel:true}")
+    private boolean parallelCompression = true;
+
+    @Value("${export.compression.threads:0}")
+    private int compressionThreads = 0;
+
+    @Value("${export.compression.zstd-level:3}")
+    private int zstdLevel = 3;
+
+    public static final String CSV_CONTENT_TYPE = "text/csv";
+
+    // Resumable uploads cut parts at checkpoints; without one, force a cut at this multiple of the
+    // part size, capped at a part's share of the buffer budget
+    private static final int MAX_UNCHECKPOINTED_PARTS = 4;
 
     public StreamingUpload startUpload(String key) {
         return startUpload(key, false);
     }
 
     public StreamingUpload startUpload(String key, boolean gzipEnabled) {
-        String contentType = "text/csv";
-        String contentEncoding = gzipEnabled ? "gzip" : null;
+        return startUpload(key, CSV_CONTENT_TYPE, gzipEnabled ? Compression.GZIP : Compression.NONE, null);
+    }
+
+    /**
+     * @param checkpointListener when set, the upload is resumable: parts are cut at
+     *                           {@link StreamingUpload#checkpoint row boundaries} and every
+     *                           resume point is reported once all parts up to it are uploaded
+     */
+    public StreamingUpload startUpload(String key, String contentType, Compression compression,
+                                       @Nullable CheckpointListener checkpointListener) {
+        CompressionCodec codec = codecFor(compression);
+        String contentEncoding = codec.contentEncoding();
 
         CreateMultipartUploadRequest.Builder requestBuilder = CreateMultipartUploadRequest.builder()
                 .bucket(bucketName)
@@ -52,184 +98,384 @@ public class S3StreamingUploader {
             requestBuilder.contentEncoding(contentEncoding);
         }
 
-        CreateMultipartUploadResponse response = s3Client.createMultipartUpload(requestBuilder.build());
-        return new StreamingUpload(s3Client, bucketName, key, response.uploadId(), gzipEnabled);
+        MultipartUploadBackend uploadBackend = uploadBackend();
+        String uploadId = uploadBackend.createMultipartUpload(requestBuilder.build());
+        return new StreamingUpload(uploadBackend, bucketName, key, uploadId, codec, bufferPool,
+                uploadScheduler.openWindow(), partSizer(), checkpointListener, List.of(), null);
+    }
+
+    /**
+     * Continues an existing multipart upload after {@code checkpoint}, keeping
+     * {@code uploadedParts} and uploading new parts from {@code checkpoint.partNumber() + 1}.
+     *
+     * @throws NoSuchUploadException if the multipart upload was aborted or has expired
+     */
+    public StreamingUpload resumeUpload(String key, String uploadId, Compression compression,
+                                        List<CompletedPart> uploadedParts, ExportCheckpoint checkpoint,
+                                        CheckpointListener checkpointListener) {
+        MultipartUploadBackend uploadBackend = uploadBackend();
+        uploadBackend.listParts(ListPartsRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .uploadId(uploadId)
+                .maxParts(1)
+                .build());
+
+        return new StreamingUpload(uploadBackend, bucketName, key, uploadId, codecFor(compression), bufferPool,
+                uploadScheduler.openWindow(), partSizer(), checkpointListener, uploadedParts, checkpoint);
+    }
+
+    /**
+     * Aborts a multipart upload no {@link StreamingUpload} is open for, such as one left
+     * behind by an earlier attempt; an upload that is already gone is ignored.
+     */
+    public void abortUpload(String key, String uploadId) {
+        try {
+            uploadBackend().abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                    .bucket(bucketName)
+                    .key(key)
+                    .uploadId(uploadId)
+                    .build());
+        } catch (NoSuchUploadException e) {
+            log.debug("Multipart upload already gone: uploadId={}", uploadId);
+        }
+    }
+
+    /**
+     * With {@code export.compression.parallel}, gzip compresses blocks on the shared
+     * compression pool and zstd uses the same number of native worker threads.
+     */
+    public CompressionCodec codecFor(Compression compression) {
+        return switch (compression) {
+            case NONE -> CompressionCodec.NONE;
+            case GZIP -> new GzipCodec(parallelCompression ? compressionExecutor : null, effectiveCompressionThreads() * 2);
+            case ZSTD -> new ZstdCodec(zstdLevel, parallelCompression ? effectiveCompressionThreads() : 0);
+            case LZ4 -> new Lz4Codec();
+        };
+    }
+
+    private MultipartUploadBackend uploadBackend() {
+        MultipartUploadBackend selected = switch (backend.toLowerCase(Locale.ROOT)) {
+            case "sync" -> syncBackend;
+            case "async" -> asyncBackend;
+            default -> throw new IllegalStateException("Unknown export.upload.backend: " + backend);
+        };
+        return new RetryingMultipartUploadBackend(selected, partRetries, retryBackoffMs);
+    }
+
+    private PartSizer partSizer() {
+        return new PartSizer(maxPartSizeMb * 1024 * 1024, bufferPool.budgetBytes() / uploadScheduler.getMaxInFlight());
+    }
+
+    private int effectiveCompressionThreads() {
+        return compressionThreads > 0 ? compressionThreads : Runtime.getRuntime().availableProcessors();
+    }
+
+    @FunctionalInterface
+    public interface CheckpointListener {
+        /**
+         * Called, in part order, when every part up to {@code checkpoint.partNumber()} is
+         * uploaded; {@code parts} are the parts completed since the previous checkpoint.
+         */
+        void onCheckpoint(List<CompletedPart> parts, ExportCheckpoint checkpoint);
     }
 
     @Slf4j
-    public static class StreamingUpload {
-        private final S3Client s3Client;
+    public static class StreamingUpload implements ExportUpload {
+        private final MultipartUploadBackend backend;
         private final String bucket;
         private final String key;
         private final String uploadId;
-        private final boolean gzipEnabled;
-        private final ExecutorService uploadExecutor;
-
-        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-        private final Writer writer;
-        private final @Nullable GZIPOutputStream gzipStream;
-        private final List<CompletableFuture<CompletedPart>> pendingUploads = new ArrayList<>();
+        private final CompressionCodec codec;
+        private final @Nullable CheckpointListener checkpointListener;
+        private final PartUploadScheduler.Window uploadWindow;
+        private final PartSizer partSizer;
+
+        private final PartBufferPool bufferPool;
+        private final PartBuffer buffer;
+        private OutputStream out;
         private final List<CompletedPart> completedParts = new CopyOnWriteArrayList<>();
 
+        // Parts uploaded out of order, waiting for their predecessors before they can be committed
+        private final TreeMap<Integer, UploadedPart> uncommittedParts = new TreeMap<>();
+        private final List<CompletedPart> partsSinceCheckpoint = new ArrayList<>();
+        private int nextPartToCommit;
+        private volatile @Nullable ExportCheckpoint lastCheckpoint;
+        private volatile boolean checkpointsStopped;
+
         private int partNumber = 1;
         private long totalBytes = 0;
         private long uncompressedBytes = 0;
 
-        private static ExecutorService createMdcAwareExecutor(int threads) {
-            Map<String, String> parentContext = MDC.getCopyOfContextMap();
-            return Executors.newFixedThreadPool(threads, r -> {
-                return new Thread(() -> {
-                    try {
-                        if (parentContext != null) {
-                            MDC.setContextMap(parentContext);
-                        }
-                        r.run();
-                    } finally {
-                        MDC.clear();
-                    }
-                });
-            });
-        }
-
-        public StreamingUpload(S3Client s3Client, String bucket, String key, String uploadId, boolean gzipEnabled) {
-            this.s3Client = s3Client;
+        // Size parts are cut at, re-evaluated after every part
+        private int partSize = PartSizer.MIN_PART_SIZE;
+        private long rowsWritten;
+        private long expectedRows;
+
+        private volatile ExportMeters.@Nullable Stages meters;
+
+        /**
+         * @param codec compression applied to the uploaded bytes
+         * @param bufferPool pool the parts are buffered in until uploaded
+         * @param uploadWindow slots of the shared upload scheduler the parts are uploaded in
+         * @param partSizer picks the size of each part
+         * @param checkpointListener makes the upload resumable, see {@link #checkpoint}
+         * @param uploadedParts parts already uploaded by a previous attempt
+         * @param resumeFrom checkpoint the previous attempt stopped at, or {@code null} for a new upload
+         */
+        StreamingUpload(MultipartUploadBackend backend, String bucket, String key, String uploadId,
+                               CompressionCodec codec, PartBufferPool bufferPool,
+                               PartUploadScheduler.Window uploadWindow, PartSizer partSizer,
+                               @Nullable CheckpointListener checkpointListener,
+                               List<CompletedPart> uploadedParts, @Nullable ExportCheckpoint resumeFrom) {
+            this.backend = backend;
             this.bucket = bucket;
             this.key = key;
             this.uploadId = uploadId;
-            this.gzipEnabled = gzipEnabled;
-            this.uploadExecutor = createMdcAwareExecutor(MAX_CONCURRENT_UPLOADS);
-
-            try {
-                if (gzipEnabled) {
-                    this.gzipStream = new GZIPOutputStream(buffer);
-                    this.writer = new OutputStreamWriter(gzipStream, StandardCharsets.UTF_8);
-                } else {
-                    this.gzipStream = null;
-                    this.writer = new OutputStreamWriter(buffer, StandardCharsets.UTF_8);
-                }
-            } catch (IOException e) {
-                throw new RuntimeException("Failed to initialize gzip stream", e);
+            this.codec = codec;
+            this.bufferPool = bufferPool;
+            this.buffer = new PartBuffer(bufferPool);
+            this.checkpointListener = checkpointListener;
+            this.uploadWindow = uploadWindow;
+            this.partSizer = partSizer;
+
+            this.completedParts.addAll(uploadedParts);
+            if (resumeFrom != null) {
+                this.partNumber = resumeFrom.partNumber() + 1;
+                this.totalBytes = resumeFrom.compressedBytes();
+                this.uncompressedBytes = resumeFrom.uncompressedBytes();
+                this.lastCheckpoint = resumeFrom;
+                this.rowsWritten = resumeFrom.rows();
             }
+            this.nextPartToCommit = partNumber;
+            this.partSize = nextPartSize();
+            this.out = startCompression();
         }
 
         public void write(String line) throws IOException {
             byte[] lineBytes = (line + "\n").getBytes(StandardCharsets.UTF_8);
-            uncompressedBytes += lineBytes.length;
+            write(lineBytes, 0, lineBytes.length);
+        }
 
-            writer.write(line);
-            writer.write("\n");
-            writer.flush();
+        @Override
+        public void write(byte[] data, int offset, int length) throws IOException {
+            // While the shared buffer budget is used up, upload what is buffered rather than
+            // wait for other exports with a part nearly as large as this one
+            if (buffer.size() >= PartSizer.MIN_PART_SIZE && bufferPool.isExhausted()) {
+                flushPartAsync(null);
+            }
 
-            if (gzipEnabled && gzipStream != null) {
-                // For gzip, we need to check compressed size
-                // Flush gzip periodically to get accurate buffer size
+            uncompressedBytes += length;
+            ExportMeters.Stages stages = meters;
+            if (stages != null) {
+                long start = System.nanoTime();
+                out.write(data, offset, length);
+                stages.compress().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            } else {
+                out.write(data, offset, length);
             }
 
-            if (buffer.size() >= PART_SIZE) {
-                flushPartAsync();
+            long maxPartSize = checkpointListener != null
+                    ? partSizer.uncheckpointedPartSize(partSize, MAX_UNCHECKPOINTED_PARTS) : partSize;
+            if (buffer.size() >= maxPartSize) {
+                flushPartAsync(null);
             }
         }
 
-        private void flushPartAsync() throws IOException {
-            writer.flush();
-            if (gzipEnabled && gzipStream != null) {
-                // Finish current gzip block but don't close the stream
-                gzipStream.flush();
+        /**
+         * For resumable uploads, cuts a part here once enough data is buffered. The
+         * compressed stream is finished at the cut, so the part ends on a complete gzip
+         * member / zstd or lz4 frame and a later attempt can append new ones after it.
+         */
+        @Override
+        public void checkpoint(long lastId, long rows) throws IOException {
+            rowsWritten = rows;
+            if (checkpointListener != null && buffer.size() >= partSize) {
+                finishCompression();
+                flushPartAsync(new RowPosition(lastId, rows));
+                out = startCompression();
             }
+        }
 
-            byte[] data = buffer.toByteArray();
-            if (data.length == 0) return;
+        /**
+         * Expected number of rows in the export, used to size parts up front for large
+         * exports; 0 if unknown.
+         */
+        @Override
+        public void expectRows(long rows) {
+            this.expectedRows = rows;
+            this.partSize = nextPartSize();
+        }
 
-            int currentPartNumber = partNumber++;
-            totalBytes += data.length;
-            buffer.reset();
+        /**
+         * Records compression time and part uploads in {@code stages} from now on.
+         */
+        @Override
+        public void instrument(ExportMeters.Stages stages) {
+            this.meters = stages;
+        }
 
-            // For gzip, we need to create a new gzip stream for the next part
-            // This is handled by reinitializing in the buffer reset
+        private int nextPartSize() {
+            return partSizer.partSize(partNumber, totalBytes + buffer.size(), rowsWritten, expectedRows);
+        }
 
-            CompletableFuture<CompletedPart> future = CompletableFuture.supplyAsync(() -> {
-                try {
-                    return uploadPart(data, currentPartNumber);
-                } catch (Exception e) {
-                    throw new CompletionException(e);
-                }
-            }, uploadExecutor);
+        public String getUploadId() {
+            return uploadId;
+        }
+
+        /**
+         * Compressed bytes cut into parts or buffered so far; the codec may hold back a few more.
+         */
+        @Override
+        public long getCompressedBytes() {
+            return totalBytes + buffer.size();
+        }
 
-            pendingUploads.add(future);
+        /**
+         * Latest resume point whose parts are all uploaded (or the one this upload was
+         * resumed from), or {@code null} if nothing can be reused yet.
+         */
+        @Override
+        public @Nullable ExportCheckpoint getLastCheckpoint() {
+            return lastCheckpoint;
+        }
 
-            if (pendingUploads.size() >= MAX_CONCURRENT_UPLOADS * 2) {
-                waitForSomeUploads();
+        private OutputStream startCompression() {
+            try {
+                return codec.compress(buffer);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to initialize compression stream", e);
             }
         }
 
-        private CompletedPart uploadPart(byte[] data, int partNum) {
-            long startTime = System.currentTimeMillis();
+        /**
+         * Ends the current compressed stream; closing the buffer it writes to is a no-op.
+         */
+        private void finishCompression() throws IOException {
+            if (out != buffer) {
+                out.close();
+            }
+        }
 
-            UploadPartResponse response = s3Client.uploadPart(
-                    UploadPartRequest.builder()
-                            .bucket(bucket)
-                            .key(key)
-                            .uploadId(uploadId)
-                            .partNumber(partNum)
-                            .build(),
-                    RequestBody.fromBytes(data)
-            );
+        private void flushPartAsync(@Nullable RowPosition position) throws IOException {
+            if (buffer.size() == 0) return;
+            if (partNumber > PartSizer.MAX_PART_COUNT) {
+                throw new IOException("Export exceeds the S3 limit of " + PartSizer.MAX_PART_COUNT + " parts");
+            }
+
+            PartBuffer.Part data = buffer.detach();
+            int currentPartNumber = partNumber++;
+            totalBytes += data.size();
+
+            ExportCheckpoint checkpoint = position != null
+                    ? new ExportCheckpoint(currentPartNumber, position.lastId(), position.rows(),
+                            uncompressedBytes, totalBytes)
+                    : null;
+
+            submitPart(data, currentPartNumber, checkpoint);
+            partSize = nextPartSize();
+        }
+
+        /**
+         * Starts the upload of a part as soon as the upload window has a free slot; its
+         * buffers go back to the pool once the upload has finished.
+         */
+        private void submitPart(PartBuffer.Part data, int partNum,
+                                @Nullable ExportCheckpoint checkpoint) throws IOException {
+            UploadPartRequest request = UploadPartRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .uploadId(uploadId)
+                    .partNumber(partNum)
+                    .build();
+            ExportMeters.Stages stages = meters;
+            if (stages != null) {
+                stages.partSize().record(data.size());
+            }
+            try {
+                uploadWindow.submit(() -> {
+                    long startTime = System.currentTimeMillis();
+                    return backend.uploadPart(request, data)
+                            .thenApply(eTag -> completePart(data, partNum, eTag, startTime, checkpoint))
+                            .whenComplete((part, e) -> data.release());
+                });
+            } catch (IOException | RuntimeException e) {
+                data.release();
+                throw e;
+            }
+        }
 
+        private CompletedPart completePart(PartBuffer.Part data, int partNum, String eTag, long startTime,
+                                           @Nullable ExportCheckpoint checkpoint) {
             long duration = System.currentTimeMillis() - startTime;
-            double speedMBps = duration > 0 ? (data.length / (1024.0 * 1024)) / (duration / 1000.0) : 0;
+            ExportMeters.Stages stages = meters;
+            if (stages != null) {
+                stages.partUpload().record(duration, TimeUnit.MILLISECONDS);
+            }
+            double speedMBps = duration > 0 ? (data.size() / (1024.0 * 1024)) / (duration / 1000.0) : 0;
             log.info("Uploaded part {}: {} bytes in {}ms ({:.2f} MB/s)",
-                    partNum, data.length, duration, speedMBps);
+                    partNum, data.size(), duration, speedMBps);
 
             CompletedPart part = CompletedPart.builder()
                     .partNumber(partNum)
-                    .eTag(response.eTag())
+                    .eTag(eTag)
                     .build();
 
             completedParts.add(part);
+            commitPart(part, checkpoint);
             return part;
         }
 
-        private void waitForSomeUploads() {
-            int waitCount = pendingUploads.size() / 2;
-            List<CompletableFuture<CompletedPart>> toWait = new ArrayList<>(pendingUploads.subList(0, waitCount));
-
-            try {
-                CompletableFuture.allOf(toWait.toArray(new CompletableFuture[0])).join();
-                pendingUploads.removeAll(toWait);
-            } catch (CompletionException e) {
-                throw new RuntimeException("Part upload failed", e.getCause());
+        /**
+         * Reports checkpoints in part order: a checkpoint is only durable once its part
+         * and every part before it have been uploaded.
+         */
+        private synchronized void commitPart(CompletedPart part, @Nullable ExportCheckpoint checkpoint) {
+            if (checkpointListener == null || checkpointsStopped) {
+                return;
             }
+            uncommittedParts.put(part.partNumber(), new UploadedPart(part, checkpoint));
+
+            UploadedPart next;
+            while ((next = uncommittedParts.remove(nextPartToCommit)) != null) {
+                nextPartToCommit++;
+                partsSinceCheckpoint.add(next.part());
+                ExportCheckpoint reached = next.checkpoint();
+                if (reached != null) {
+                    checkpointListener.onCheckpoint(List.copyOf(partsSinceCheckpoint), reached);
+                    partsSinceCheckpoint.clear();
+                    lastCheckpoint = reached;
+                }
+            }
+        }
+
+        /**
+         * Upload stage occupancy: parts still in flight and the total time the writer
+         * spent blocked waiting for part uploads.
+         */
+        @Override
+        public String describeOccupancy() {
+            return uploadWindow.describeOccupancy() + " " + bufferPool.describeUsage();
         }
 
+        @Override
         public long complete() throws IOException {
-            writer.flush();
-            if (gzipEnabled && gzipStream != null) {
-                gzipStream.finish();
-            }
+            finishCompression();
 
-            byte[] remainingData = buffer.toByteArray();
-            if (remainingData.length > 0) {
+            if (buffer.size() > 0) {
+                PartBuffer.Part remainingData = buffer.detach();
                 int currentPartNumber = partNumber++;
-                totalBytes += remainingData.length;
-
-                CompletableFuture<CompletedPart> future = CompletableFuture.supplyAsync(
-                        () -> uploadPart(remainingData, currentPartNumber), uploadExecutor);
-                pendingUploads.add(future);
+                totalBytes += remainingData.size();
+                submitPart(remainingData, currentPartNumber, null);
             }
 
-            try {
-                CompletableFuture.allOf(pendingUploads.toArray(new CompletableFuture[0])).join();
-            } catch (CompletionException e) {
-                throw new IOException("Part upload failed", e.getCause());
-            } finally {
-                uploadExecutor.shutdown();
-            }
+            uploadWindow.awaitAll();
 
             List<CompletedPart> sortedParts = completedParts.stream()
                     .sorted(Comparator.comparingInt(CompletedPart::partNumber))
                     .toList();
 
-            s3Client.completeMultipartUpload(
+            backend.completeMultipartUpload(
                     CompleteMultipartUploadRequest.builder()
                             .bucket(bucket)
                             .key(key)
@@ -240,27 +486,48 @@ public class S3StreamingUploader {
                             .build()
             );
 
-            if (gzipEnabled) {
+            if (codec != CompressionCodec.NONE) {
                 double compressionRatio = uncompressedBytes > 0 ? 
                         (1 - (double) totalBytes / uncompressedBytes) * 100 : 0;
                 log.info("Completed multipart upload: {} parts, {} bytes (compressed from {} bytes, {:.1f}% reduction)",
                         sortedParts.size(), totalBytes, uncompressedBytes, compressionRatio);
             } else {
-                log.info("Completed multipart upload: {} parts, {} bytes total (parallel: {} threads)",
-                        sortedParts.size(), totalBytes, MAX_CONCURRENT_UPLOADS);
+                log.info("Completed multipart upload: {} parts, {} bytes total",
+                        sortedParts.size(), totalBytes);
             }
 
             return totalBytes;
         }
 
+        @Override
         public long getUncompressedBytes() {
             return uncompressedBytes;
         }
 
+        /**
+         * Drops the unfinished part but keeps the multipart upload on S3, so a later
+         * attempt can resume from {@link #getLastCheckpoint()}. No checkpoint is reported
+         * from here on, and the parts already uploading are waited for: the attempt that
+         * resumes may upload the same part numbers, which a late part must not overwrite.
+         */
+        @Override
+        public void release() {
+            stopCheckpoints();
+            buffer.release();
+            try {
+                uploadWindow.awaitAll();
+            } catch (IOException e) {
+                // The resuming attempt uploads again everything after the last checkpoint
+                log.debug("Part upload failed after release: uploadId={}", uploadId, e);
+            }
+        }
+
+        @Override
         public void abort() {
-            uploadExecutor.shutdownNow();
+            stopCheckpoints();
+            buffer.release();
             try {
-                s3Client.abortMultipartUpload(
+                backend.abortMultipartUpload(
                         AbortMultipartUploadRequest.builder()
                                 .bucket(bucket)
                                 .key(key)
@@ -271,5 +538,16 @@ public class S3StreamingUploader {
                 log.warn("Failed to abort multipart upload", e);
             }
         }
+
+        /**
+         * Waits for a checkpoint being reported right now, then reports no more.
+         */
+        private synchronized void stopCheckpoints() {
+            checkpointsStopped = true;
+        }
+
+        private record RowPosition(long lastId, long rows) {}
+
+        private record UploadedPart(CompletedPart part, @Nullable ExportCheckpoint checkpoint) {}
     }
 }
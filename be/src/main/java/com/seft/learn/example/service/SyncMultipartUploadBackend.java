@@ -0,0 +1,61 @@
+package com.seft.learn.example.service;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.ListPartsRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Blocking {@link S3Client}; every part in flight occupies an {@code exportUploadExecutor}
+ * thread for the duration of its request.
+ */
+@Component
+class SyncMultipartUploadBackend implements MultipartUploadBackend {
+
+    private final S3Client s3Client;
+    private final Executor uploadExecutor;
+
+    SyncMultipartUploadBackend(S3Client s3Client, @Qualifier("exportUploadExecutor") Executor uploadExecutor) {
+        this.s3Client = s3Client;
+        this.uploadExecutor = uploadExecutor;
+    }
+
+    @Override
+    public String createMultipartUpload(CreateMultipartUploadRequest request) {
+        return s3Client.createMultipartUpload(request).uploadId();
+    }
+
+    @Override
+    public void listParts(ListPartsRequest request) {
+        s3Client.listParts(request);
+    }
+
+    /**
+     * The SDK reads the part through a stream over its pooled buffers.
+     */
+    @Override
+    public CompletableFuture<String> uploadPart(UploadPartRequest request, PartBuffer.Part part) {
+        return CompletableFuture.supplyAsync(() -> s3Client.uploadPart(
+                request,
+                RequestBody.fromContentProvider(part.contentProvider(), part.size(), "application/octet-stream")
+        ).eTag(), uploadExecutor);
+    }
+
+    @Override
+    public void completeMultipartUpload(CompleteMultipartUploadRequest request) {
+        s3Client.completeMultipartUpload(request);
+    }
+
+    @Override
+    public void abortMultipartUpload(AbortMultipartUploadRequest request) {
+        s3Client.abortMultipartUpload(request);
+    }
+}
@@ -0,0 +1,46 @@
+package com.seft.learn.example.service.compression;
+
+import org.jspecify.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Compression applied to an export as it is uploaded.
+ *
+ * <p>{@link #compress} streams are finished by {@link OutputStream#close()}, which
+ * also closes the target; callers that keep writing to the target after a codec
+ * stream ends pass a target whose {@code close()} is a no-op.
+ */
+public interface CompressionCodec {
+
+    CompressionCodec NONE = new CompressionCodec() {
+        @Override
+        public String fileSuffix() {
+            return "";
+        }
+
+        @Override
+        public @Nullable String contentEncoding() {
+            return null;
+        }
+
+        @Override
+        public OutputStream compress(OutputStream out) {
+            return out;
+        }
+    };
+
+    /**
+     * Appended to the object key, e.g. {@code .gz}.
+     */
+    String fileSuffix();
+
+    /**
+     * Value of the object's {@code Content-Encoding}, or {@code null} if the codec has
+     * no registered HTTP content coding.
+     */
+    @Nullable String contentEncoding();
+
+    OutputStream compress(OutputStream out) throws IOException;
+}
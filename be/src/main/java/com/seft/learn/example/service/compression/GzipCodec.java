@@ -0,0 +1,46 @@
+package com.seft.learn.example.service.compression;
+
+import org.jspecify.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.Executor;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * gzip, either single-threaded or as pigz-style concatenated members compressed in
+ * parallel on {@code executor}.
+ */
+public class GzipCodec implements CompressionCodec {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final @Nullable Executor executor;
+    private final int maxBlocksInFlight;
+
+    /**
+     * @param executor          compresses blocks in parallel when set
+     * @param maxBlocksInFlight per-stream cap on blocks queued for parallel compression
+     */
+    public GzipCodec(@Nullable Executor executor, int maxBlocksInFlight) {
+        this.executor = executor;
+        this.maxBlocksInFlight = maxBlocksInFlight;
+    }
+
+    @Override
+    public String fileSuffix() {
+        return ".gz";
+    }
+
+    @Override
+    public String contentEncoding() {
+        return "gzip";
+    }
+
+    @Override
+    public OutputStream compress(OutputStream out) throws IOException {
+        return executor != null
+                ? new ParallelGzipOutputStream(out, executor, ParallelGzipOutputStream.DEFAULT_BLOCK_SIZE, maxBlocksInFlight)
+                : new GZIPOutputStream(out, BUFFER_SIZE);
+    }
+}
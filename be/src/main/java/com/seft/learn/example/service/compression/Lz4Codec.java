@@ -0,0 +1,31 @@
+package com.seft.learn.example.service.compression;
+
+import net.jpountz.lz4.LZ4FrameOutputStream;
+import org.jspecify.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * LZ4 frame format: the lowest CPU cost, at a lower ratio than gzip or zstd.
+ */
+public class Lz4Codec implements CompressionCodec {
+
+    @Override
+    public String fileSuffix() {
+        return ".lz4";
+    }
+
+    /**
+     * LZ4 has no registered HTTP content coding; the object is served as-is.
+     */
+    @Override
+    public @Nullable String contentEncoding() {
+        return null;
+    }
+
+    @Override
+    public OutputStream compress(OutputStream out) throws IOException {
+        return new LZ4FrameOutputStream(out);
+    }
+}
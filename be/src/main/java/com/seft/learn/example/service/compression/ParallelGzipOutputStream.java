@@ -0,0 +1,188 @@
+package com.seft.learn.example.service.compression;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * pigz-style gzip stream: input is cut into fixed-size blocks that are deflated
+ * concurrently on a shared pool, and each block is written out, in order, as a
+ * complete gzip member. Concatenated members are a valid gzip file (RFC 1952, section 2.2),
+ * so {@code gunzip}, {@link java.util.zip.GZIPInputStream} and browsers read the
+ * result like any single-member file.
+ *
+ * <p>At most {@code maxInFlight} blocks are queued per stream; the writer only blocks
+ * when the oldest block is still being compressed and the window is full.
+ */
+public class ParallelGzipOutputStream extends OutputStream {
+
+    public static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+
+    private static final byte[] HEADER = {
+            0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff
+    };
+    private static final int TRAILER_LENGTH = 8;
+
+    private static final ThreadLocal<Deflater> DEFLATERS =
+            ThreadLocal.withInitial(() -> new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+
+    private final OutputStream out;
+    private final Executor executor;
+    private final int blockSize;
+    private final int maxInFlight;
+    private final ArrayDeque<PendingBlock> pending = new ArrayDeque<>();
+    private final ArrayDeque<byte[]> freeBlocks = new ArrayDeque<>();
+
+    private byte[] block;
+    private int blockLength;
+    private boolean memberWritten;
+    private boolean finished;
+
+    public ParallelGzipOutputStream(OutputStream out, Executor executor, int blockSize, int maxInFlight) {
+        this.out = out;
+        this.executor = executor;
+        this.blockSize = blockSize;
+        this.maxInFlight = Math.max(maxInFlight, 1);
+        this.block = new byte[blockSize];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        block[blockLength++] = (byte) b;
+        if (blockLength == blockSize) {
+            submitBlock();
+        }
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length) throws IOException {
+        while (length > 0) {
+            int n = Math.min(length, blockSize - blockLength);
+            System.arraycopy(data, offset, block, blockLength, n);
+            blockLength += n;
+            offset += n;
+            length -= n;
+            if (blockLength == blockSize) {
+                submitBlock();
+            }
+        }
+    }
+
+    /**
+     * Compresses the current partial block and writes every pending member.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (blockLength > 0) {
+            submitBlock();
+        }
+        writeCompleted(true);
+        out.flush();
+    }
+
+    /**
+     * Writes all remaining members without closing the underlying stream.
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        flush();
+        if (!memberWritten) {
+            // An empty input still has to produce a valid gzip file
+            Member empty = compress(new byte[0], 0);
+            out.write(empty.bytes(), 0, empty.length());
+        }
+        finished = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        finish();
+        out.close();
+    }
+
+    private void submitBlock() throws IOException {
+        byte[] data = block;
+        int length = blockLength;
+        pending.addLast(new PendingBlock(data,
+                CompletableFuture.supplyAsync(() -> compress(data, length), executor)));
+
+        byte[] next = freeBlocks.poll();
+        block = next != null ? next : new byte[blockSize];
+        blockLength = 0;
+        writeCompleted(false);
+    }
+
+    /**
+     * Writes finished members in order. Unless {@code all} is set, stops at the first
+     * member that is still compressing, as long as the in-flight window has room.
+     */
+    private void writeCompleted(boolean all) throws IOException {
+        PendingBlock head;
+        while ((head = pending.peekFirst()) != null) {
+            if (!all && !head.member().isDone() && pending.size() < maxInFlight) {
+                return;
+            }
+            Member member;
+            try {
+                member = head.member().join();
+            } catch (CompletionException e) {
+                throw new IOException("Parallel gzip compression failed", e.getCause());
+            }
+            pending.removeFirst();
+            out.write(member.bytes(), 0, member.length());
+            freeBlocks.push(head.block());
+            memberWritten = true;
+        }
+    }
+
+    private static Member compress(byte[] data, int length) {
+        return compress(data, length, HEADER.length + length + (length >> 3) + 64 + TRAILER_LENGTH);
+    }
+
+    /**
+     * Deflates {@code data} into one gzip member, starting from a buffer of {@code capacity}
+     * bytes (at least header and trailer) and doubling it while the output does not fit.
+     */
+    static Member compress(byte[] data, int length, int capacity) {
+        Deflater deflater = DEFLATERS.get();
+        deflater.reset();
+        deflater.setInput(data, 0, length);
+        deflater.finish();
+
+        byte[] buf = new byte[capacity];
+        System.arraycopy(HEADER, 0, buf, 0, HEADER.length);
+        int pos = HEADER.length;
+        while (!deflater.finished()) {
+            if (pos == buf.length - TRAILER_LENGTH) {
+                buf = Arrays.copyOf(buf, buf.length * 2);
+            }
+            pos += deflater.deflate(buf, pos, buf.length - TRAILER_LENGTH - pos);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, length);
+        pos = writeIntLE(buf, pos, (int) crc.getValue());
+        pos = writeIntLE(buf, pos, length);
+        return new Member(buf, pos);
+    }
+
+    private static int writeIntLE(byte[] buf, int pos, int value) {
+        buf[pos] = (byte) value;
+        buf[pos + 1] = (byte) (value >> 8);
+        buf[pos + 2] = (byte) (value >> 16);
+        buf[pos + 3] = (byte) (value >> 24);
+        return pos + 4;
+    }
+
+    record Member(byte[] bytes, int length) {}
+
+    private record PendingBlock(byte[] block, CompletableFuture<Member> member) {}
+}
@@ -0,0 +1,40 @@
+package com.seft.learn.example.service.compression;
+
+import com.github.luben.zstd.ZstdOutputStream;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Zstandard: ratios close to gzip at several times its speed. With {@code workers > 0}
+ * libzstd compresses with that many native threads.
+ */
+public class ZstdCodec implements CompressionCodec {
+
+    private final int level;
+    private final int workers;
+
+    public ZstdCodec(int level, int workers) {
+        this.level = level;
+        this.workers = workers;
+    }
+
+    @Override
+    public String fileSuffix() {
+        return ".zst";
+    }
+
+    @Override
+    public String contentEncoding() {
+        return "zstd";
+    }
+
+    @Override
+    public OutputStream compress(OutputStream out) throws IOException {
+        ZstdOutputStream zstd = new ZstdOutputStream(out, level);
+        if (workers > 0) {
+            zstd.setWorkers(workers);
+        }
+        return zstd;
+    }
+}
@@ -0,0 +1,32 @@
+package com.seft.learn.example.service.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Feeds {@code COPY ... TO STDOUT} output into an {@link ExportPipeline}.
+ *
+ * <p>The PostgreSQL driver hands over one CSV row per {@code write} call, so counting
+ * calls gives a running row count for progress reporting without parsing the bytes.
+ */
+public class CopyOutputStream extends OutputStream {
+
+    private final ExportPipeline pipeline;
+    private long rows;
+
+    public CopyOutputStream(ExportPipeline pipeline, long initialRows) {
+        this.pipeline = pipeline;
+        this.rows = initialRows;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length) throws IOException {
+        pipeline.recordRows(++rows);
+        pipeline.write(data, offset, length);
+    }
+}
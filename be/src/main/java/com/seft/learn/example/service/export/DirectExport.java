@@ -0,0 +1,11 @@
+package com.seft.learn.example.service.export;
+
+import com.seft.learn.example.entity.ExportJob.Compression;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * A CSV export checked against the direct download caps, ready to be streamed into a
+ * response; {@code range} is {@code null} when no user is in scope.
+ */
+public record DirectExport(UserQuery query, @Nullable IdRange range, Compression compression, String fileName) {
+}
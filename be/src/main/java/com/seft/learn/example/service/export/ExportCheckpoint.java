@@ -0,0 +1,13 @@
+package com.seft.learn.example.service.export;
+
+/**
+ * Resume point of an export: parts {@code 1..partNumber} are uploaded and together
+ * hold every user with {@code id <= lastId}.
+ *
+ * @param rows              rows exported through {@code lastId}
+ * @param uncompressedBytes encoded bytes written through {@code lastId}
+ * @param compressedBytes   bytes uploaded in parts {@code 1..partNumber}
+ */
+public record ExportCheckpoint(int partNumber, long lastId, long rows,
+                               long uncompressedBytes, long compressedBytes) {
+}
@@ -0,0 +1,153 @@
+package com.seft.learn.example.service.export;
+
+import com.seft.learn.example.entity.ExportJob;
+import com.seft.learn.example.entity.ExportJobFile;
+import com.seft.learn.example.entity.ExportJobPart;
+import com.seft.learn.example.repository.ExportJobFileRepository;
+import com.seft.learn.example.repository.ExportJobPartRepository;
+import com.seft.learn.example.repository.ExportJobRepository;
+import lombok.RequiredArgsConstructor;
+import org.jspecify.annotations.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Persists the multipart upload id, uploaded parts and keyset position of running
+ * exports in {@code export_jobs} / {@code export_job_parts}, so a retried or restarted
+ * job can continue where the previous attempt stopped. The finished files of an export
+ * split into several objects are kept in {@code export_job_files}; they outlive the job
+ * as the list its manifest is built from.
+ *
+ * <p>Writes take the lease owner of the attempt making them and are dropped once another
+ * node has claimed the job, so a node that lost its lease while parts were still
+ * finishing cannot overwrite the checkpoint of the attempt that took over.
+ */
+@Component
+@RequiredArgsConstructor
+public class ExportCheckpointStore {
+
+    private final ExportJobRepository exportJobRepository;
+    private final ExportJobPartRepository partRepository;
+    private final ExportJobFileRepository fileRepository;
+
+    public @Nullable ExportCheckpoint checkpointOf(ExportJob job) {
+        if (job.getUploadId() == null || job.getCheckpointPartNumber() == null) {
+            return null;
+        }
+        return new ExportCheckpoint(
+                job.getCheckpointPartNumber(),
+                job.getCheckpointLastId(),
+                job.getCheckpointRows(),
+                job.getCheckpointUncompressedBytes(),
+                job.getCheckpointCompressedBytes());
+    }
+
+    @Transactional(readOnly = true)
+    public List<CompletedPart> loadParts(UUID jobId, ExportCheckpoint checkpoint) {
+        return partRepository.findByJobIdAndPartNumberLessThanEqualOrderByPartNumber(jobId, checkpoint.partNumber())
+                .stream()
+                .map(part -> CompletedPart.builder()
+                        .partNumber(part.getPartNumber())
+                        .eTag(part.getETag())
+                        .build())
+                .toList();
+    }
+
+    /**
+     * Starts tracking a new multipart upload, dropping any previous checkpoint.
+     *
+     * @return {@code false} if {@code owner} no longer holds the job's lease; nothing is written
+     */
+    @Transactional
+    public boolean startUpload(UUID jobId, String owner, String uploadId) {
+        if (exportJobRepository.resetCheckpoint(jobId, owner, uploadId) == 0) {
+            return false;
+        }
+        partRepository.deleteByJobId(jobId);
+        return true;
+    }
+
+    /**
+     * Records the parts uploaded up to {@code checkpoint} and the checkpoint itself.
+     *
+     * @return {@code false} if {@code owner} no longer holds the job's lease; nothing is written
+     */
+    @Transactional
+    public boolean save(UUID jobId, String owner, List<CompletedPart> parts, ExportCheckpoint checkpoint) {
+        // Updated first: the row lock keeps the lease from moving before the parts are in
+        if (exportJobRepository.updateCheckpoint(jobId, owner, checkpoint.partNumber(), checkpoint.lastId(),
+                checkpoint.rows(), checkpoint.uncompressedBytes(), checkpoint.compressedBytes()) == 0) {
+            return false;
+        }
+        partRepository.saveAll(parts.stream()
+                .map(part -> ExportJobPart.builder()
+                        .jobId(jobId)
+                        .partNumber(part.partNumber())
+                        .eTag(part.eTag())
+                        .build())
+                .toList());
+        return true;
+    }
+
+    @Transactional
+    public void clear(UUID jobId, String owner) {
+        if (exportJobRepository.resetCheckpoint(jobId, owner, null) == 1) {
+            partRepository.deleteByJobId(jobId);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public List<ExportFile> files(UUID jobId) {
+        return fileRepository.findByJobIdOrderByFileNumber(jobId).stream()
+                .map(ExportCheckpointStore::toExportFile)
+                .toList();
+    }
+
+    /**
+     * Files 1..n finished by earlier attempts, without gaps; files recorded after a gap
+     * (an earlier file failed while a later one completed) are dropped and written again.
+     */
+    @Transactional
+    public List<ExportFile> finishedFiles(UUID jobId) {
+        List<ExportFile> consecutive = new ArrayList<>();
+        for (ExportFile file : files(jobId)) {
+            if (file.fileNumber() != consecutive.size() + 1) {
+                break;
+            }
+            consecutive.add(file);
+        }
+        fileRepository.deleteByJobIdAndFileNumberAfter(jobId, consecutive.size());
+        return consecutive;
+    }
+
+    /**
+     * @return {@code false} if {@code owner} no longer holds the job's lease; nothing is written
+     */
+    @Transactional
+    public boolean saveFile(UUID jobId, String owner, ExportFile file) {
+        if (exportJobRepository.findByIdAndLeaseOwner(jobId, owner).isEmpty()) {
+            return false;
+        }
+        fileRepository.save(ExportJobFile.builder()
+                .jobId(jobId)
+                .fileNumber(file.fileNumber())
+                .s3Key(file.s3Key())
+                .rowCount(file.rows())
+                .sizeBytes(file.sizeBytes())
+                .uncompressedSizeBytes(file.uncompressedBytes())
+                .minId(file.minId())
+                .maxId(file.maxId())
+                .build());
+        return true;
+    }
+
+    private static ExportFile toExportFile(ExportJobFile file) {
+        return new ExportFile(file.getFileNumber(), file.getS3Key(), file.getRowCount(), file.getSizeBytes(),
+                file.getUncompressedSizeBytes(), file.getMinId(), file.getMaxId());
+    }
+}
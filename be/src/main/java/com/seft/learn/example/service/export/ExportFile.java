@@ -0,0 +1,16 @@
+package com.seft.learn.example.service.export;
+
+import org.jspecify.annotations.Nullable;
+
+/**
+ * One object of an export split into several files.
+ *
+ * @param fileNumber        1-based position of the file in the export
+ * @param sizeBytes         uploaded (compressed) size
+ * @param uncompressedBytes encoded size before compression
+ * @param minId             lowest id of the export's scope this file covers, {@code null} for an empty export
+ * @param maxId             highest id of the export's scope this file covers, {@code null} for an empty export
+ */
+public record ExportFile(int fileNumber, String s3Key, long rows, long sizeBytes, long uncompressedBytes,
+                         @Nullable Long minId, @Nullable Long maxId) {
+}
@@ -0,0 +1,124 @@
+package com.seft.learn.example.service.export;
+
+import com.seft.learn.example.entity.ExportJob;
+import com.seft.learn.example.repository.ExportJobRepository;
+import lombok.RequiredArgsConstructor;
+import org.jspecify.annotations.Nullable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * {@code export_jobs} as a durable work queue shared by every node. A worker claims
+ * the oldest unowned job with {@code FOR UPDATE SKIP LOCKED}, so concurrent claims
+ * never block on or hand out the same row, and owns it for as long as it keeps
+ * renewing the lease. A job whose lease ran out (its node died or hung) is claimed
+ * again and resumes from its last checkpoint.
+ */
+@Component
+@RequiredArgsConstructor
+public class ExportJobQueue {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ExportJobRepository exportJobRepository;
+
+    public record ClaimedJob(UUID jobId, int attempts) {}
+
+    /**
+     * Claims the oldest PENDING job, or RUNNING job with an expired lease, for {@code owner}.
+     *
+     * @return the claimed job, or {@code null} if there is none
+     */
+    @Transactional
+    public @Nullable ClaimedJob claimNext(String owner, long leaseMs) {
+        List<ClaimedJob> claimed = jdbcTemplate.query(
+            "UPDATE export_jobs SET lease_owner = ?, "
+                + "lease_expires_at = now() + ? * interval '1 millisecond', "
+                + "attempts = coalesce(attempts, 0) + 1 "
+                + "WHERE id = ("
+                + "  SELECT id FROM export_jobs"
+                + "  WHERE status IN ('PENDING', 'RUNNING')"
+                + "    AND (lease_expires_at IS NULL OR lease_expires_at < now())"
+                + "  ORDER BY created_at"
+                + "  LIMIT 1"
+                + "  FOR UPDATE SKIP LOCKED"
+                + ") RETURNING id, attempts",
+            (rs, rowNum) -> new ClaimedJob(rs.getObject(1, UUID.class), rs.getInt(2)),
+            owner, leaseMs
+        );
+        return claimed.isEmpty() ? null : claimed.get(0);
+    }
+
+    /**
+     * Extends the lease of a job {@code owner} is running.
+     *
+     * @return {@code false} if the lease was lost to another node
+     */
+    @Transactional
+    public boolean renewLease(UUID jobId, String owner, long leaseMs) {
+        return jdbcTemplate.update(
+            "UPDATE export_jobs SET lease_expires_at = now() + ? * interval '1 millisecond' "
+                + "WHERE id = ? AND lease_owner = ?",
+            leaseMs, jobId, owner
+        ) == 1;
+    }
+
+    /**
+     * Whether {@code owner} still holds the job's lease in the database, which a lost
+     * lease reaches before the owner's next heartbeat notices.
+     */
+    @Transactional(readOnly = true)
+    public boolean holdsLease(UUID jobId, String owner) {
+        Integer owned = jdbcTemplate.queryForObject(
+            "SELECT count(*) FROM export_jobs WHERE id = ? AND lease_owner = ?",
+            Integer.class, jobId, owner
+        );
+        return owned != null && owned > 0;
+    }
+
+    /**
+     * Applies {@code update} to the job and saves it if {@code owner} still holds the
+     * lease. The row stays locked until the save commits, so no other node can claim
+     * the job in between and have its attempt overwritten.
+     *
+     * @return the saved job, or {@code null} if the lease was lost and nothing was written
+     */
+    @Transactional
+    public @Nullable ExportJob updateOwned(UUID jobId, String owner, Consumer<ExportJob> update) {
+        ExportJob job = exportJobRepository.findByIdAndLeaseOwner(jobId, owner).orElse(null);
+        if (job == null) {
+            return null;
+        }
+        update.accept(job);
+        return exportJobRepository.save(job);
+    }
+
+    /**
+     * Gives up {@code owner}'s lease once the job has finished, either way.
+     */
+    @Transactional
+    public void release(UUID jobId, String owner) {
+        jdbcTemplate.update(
+            "UPDATE export_jobs SET lease_owner = NULL, lease_expires_at = NULL WHERE id = ? AND lease_owner = ?",
+            jobId, owner
+        );
+    }
+
+    /**
+     * Puts a failed job back in the queue with a fresh attempt count.
+     *
+     * @return {@code false} if the job is not FAILED
+     */
+    @Transactional
+    public boolean requeue(UUID jobId) {
+        return jdbcTemplate.update(
+            "UPDATE export_jobs SET status = 'PENDING', lease_owner = NULL, lease_expires_at = NULL, attempts = 0 "
+                + "WHERE id = ? AND status = 'FAILED'",
+            jobId
+        ) == 1;
+    }
+}
@@ -0,0 +1,90 @@
+package com.seft.learn.example.service.export;
+
+import com.seft.learn.example.entity.ExportJob.Compression;
+import com.seft.learn.example.entity.ExportJob.ExportFormat;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Micrometer meters of the export pipeline, tagged by {@code format} and {@code codec}
+ * and listed under {@code /actuator/metrics}:
+ *
+ * <ul>
+ *   <li>{@code export.fetch} - time waiting on the database: the JDBC driver between
+ *       rows, or a whole {@code COPY}, which includes the server's CSV encoding</li>
+ *   <li>{@code export.encode} - time encoding rows (CSV, or Parquet including its
+ *       column chunk compression)</li>
+ *   <li>{@code export.compress} - time the writer spends in the upload codec</li>
+ *   <li>{@code export.part.upload} / {@code export.part.size} - latency and size of
+ *       each multipart part</li>
+ *   <li>{@code export.active} - exports running on this node</li>
+ * </ul>
+ * The node-wide {@code export.parts.in.flight} gauge is registered by the upload scheduler.
+ *
+ * The stage timers are recorded per block of rows, so their totals compare directly:
+ * whichever of fetch, encode, compress or upload dominates is what bounds an export.
+ */
+@Component
+@RequiredArgsConstructor
+public class ExportMeters {
+
+    private final MeterRegistry registry;
+    private final Map<ExportFormat, AtomicInteger> active = new ConcurrentHashMap<>();
+
+    public record Stages(Timer fetch, Timer encode, Timer compress, Timer partUpload, DistributionSummary partSize) {}
+
+    public Stages stages(ExportFormat format, Compression compression) {
+        String formatTag = format.name().toLowerCase(Locale.ROOT);
+        String codecTag = compression.name().toLowerCase(Locale.ROOT);
+        return new Stages(
+                timer("export.fetch", "Time waiting on the database for rows", formatTag, codecTag),
+                timer("export.encode", "Time encoding rows", formatTag, codecTag),
+                timer("export.compress", "Time writing through the upload codec", formatTag, codecTag),
+                Timer.builder("export.part.upload")
+                        .description("Latency of one multipart part upload")
+                        .tag("format", formatTag)
+                        .tag("codec", codecTag)
+                        .publishPercentileHistogram()
+                        .register(registry),
+                DistributionSummary.builder("export.part.size")
+                        .description("Size of one multipart part")
+                        .baseUnit("bytes")
+                        .tag("format", formatTag)
+                        .tag("codec", codecTag)
+                        .register(registry));
+    }
+
+    public void exportStarted(ExportFormat format) {
+        active.computeIfAbsent(format, this::registerActive).incrementAndGet();
+    }
+
+    public void exportFinished(ExportFormat format) {
+        active.computeIfAbsent(format, this::registerActive).decrementAndGet();
+    }
+
+    private AtomicInteger registerActive(ExportFormat format) {
+        AtomicInteger count = new AtomicInteger();
+        Gauge.builder("export.active", count, AtomicInteger::get)
+                .description("Exports running on this node")
+                .tag("format", format.name().toLowerCase(Locale.ROOT))
+                .register(registry);
+        return count;
+    }
+
+    private Timer timer(String name, String description, String format, String codec) {
+        return Timer.builder(name)
+                .description(description)
+                .tag("format", format)
+                .tag("codec", codec)
+                .register(registry);
+    }
+}
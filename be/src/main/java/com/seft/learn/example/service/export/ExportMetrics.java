@@ -19,6 +19,10 @@ public class ExportMetrics {
         processedRows++;
     }
 
+    public void addRows(long rows) {
+        processedRows += rows;
+    }
+
     public void addBytes(long bytes) {
         bytesWritten += bytes;
     }
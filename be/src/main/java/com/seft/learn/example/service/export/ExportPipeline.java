@@ -0,0 +1,278 @@
+package com.seft.learn.example.service.export;
+
+import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Two-stage hand-off between the fetch/encode thread and the compress/upload thread.
+ *
+ * <p>The producer copies encoded bytes into a fixed set of preallocated chunks; full
+ * chunks are passed through a bounded queue to a consumer that writes them into the
+ * downstream sink (compression + part upload) and recycles them. The JDBC cursor keeps
+ * fetching while the previous chunks are being deflated, and the producer only blocks
+ * when every chunk is in flight. Progress callbacks also run on the consumer, so the
+ * row loop never waits for the database.
+ *
+ * <p>Each stage accumulates the time it spends waiting on its neighbour; see
+ * {@link #describeOccupancy()}.
+ */
+@Slf4j
+public class ExportPipeline implements ExportSink {
+
+    public static final int DEFAULT_CHUNK_COUNT = 8;
+    public static final int DEFAULT_CHUNK_SIZE = 256 * 1024;
+
+    private static final long POLL_INTERVAL_MS = 100;
+
+    private final ExportSink downstream;
+    private final ProgressListener progressListener;
+    private final BlockingQueue<Chunk> freeChunks;
+    private final BlockingQueue<Chunk> fullChunks;
+    private final CompletableFuture<Void> consumer;
+    private final int chunkCount;
+    private final long startNanos = System.nanoTime();
+
+    private Chunk current;
+    private long rowCount;
+
+    private volatile @Nullable Throwable failure;
+    private volatile boolean aborted;
+    // Guarded by this, so abort() never interrupts the pooled thread after consume() returned
+    private @Nullable Thread consumerThread;
+
+    // Stage stats; read across threads, so approximate while the export is running
+    private long producerBlockedNanos;
+    private long handoffs;
+    private long queuedChunksSum;
+    private long consumerIdleNanos;
+    private long consumerBusyNanos;
+
+    public ExportPipeline(ExportSink downstream, Executor executor, ProgressListener progressListener) {
+        this(downstream, executor, progressListener, DEFAULT_CHUNK_COUNT, DEFAULT_CHUNK_SIZE);
+    }
+
+    public ExportPipeline(ExportSink downstream, Executor executor, ProgressListener progressListener,
+                          int chunkCount, int chunkSize) {
+        this.downstream = downstream;
+        this.progressListener = progressListener;
+        this.freeChunks = new ArrayBlockingQueue<>(chunkCount);
+        this.fullChunks = new ArrayBlockingQueue<>(chunkCount + 1);
+        this.chunkCount = chunkCount;
+        for (int i = 1; i < chunkCount; i++) {
+            freeChunks.add(new Chunk(chunkSize));
+        }
+        this.current = new Chunk(chunkSize);
+        this.consumer = CompletableFuture.runAsync(this::consume, executor);
+    }
+
+    /**
+     * Records the number of rows encoded so far; it travels with the next chunk and is
+     * reported to the progress listener once that chunk has been written downstream.
+     */
+    public void recordRows(long rows) {
+        this.rowCount = rows;
+    }
+
+    /**
+     * Records a row boundary at the current position. It is replayed downstream between
+     * the bytes written before and after it; only the latest boundary per chunk is kept.
+     */
+    @Override
+    public void checkpoint(long lastId, long rows) {
+        this.rowCount = rows;
+        current.checkpointOffset = current.length;
+        current.checkpointLastId = lastId;
+        current.checkpointRows = rows;
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length) throws IOException {
+        while (length > 0) {
+            int n = Math.min(length, current.data.length - current.length);
+            System.arraycopy(data, offset, current.data, current.length, n);
+            current.length += n;
+            offset += n;
+            length -= n;
+            if (current.length == current.data.length) {
+                handOff();
+            }
+        }
+    }
+
+    /**
+     * Hands off the last partial chunk and waits until the consumer has written
+     * everything downstream.
+     */
+    public void finish() throws IOException {
+        if (current.length > 0 || current.checkpointOffset >= 0) {
+            handOff();
+        }
+        putFull(Chunk.END);
+        try {
+            consumer.join();
+        } catch (CompletionException e) {
+            // failure is recorded below
+        }
+        checkFailure();
+        log.info("Export pipeline finished: {}", describeOccupancy());
+    }
+
+    /**
+     * Stops the consumer without draining the remaining chunks, and waits for it to stop
+     * so the downstream sink can be released safely. The consumer is interrupted, as it
+     * may be blocked downstream, e.g. waiting for upload buffers.
+     */
+    public void abort() {
+        aborted = true;
+        fullChunks.offer(Chunk.END);
+        synchronized (this) {
+            Thread thread = consumerThread;
+            if (thread != null) {
+                thread.interrupt();
+            }
+        }
+        try {
+            consumer.join();
+        } catch (CompletionException | CancellationException e) {
+            // already failed; the failure is reported by the caller
+        }
+    }
+
+    /**
+     * Summarises where each stage spent its time. A high "blocked" share on the
+     * producer means compression/upload is the bottleneck; a high "idle" share on the
+     * consumer means the database fetch or encoding is.
+     */
+    public String describeOccupancy() {
+        long elapsed = Math.max(System.nanoTime() - startNanos, 1);
+        double avgQueued = handoffs > 0 ? (double) queuedChunksSum / handoffs : 0;
+        return String.format("fetch+encode busy=%.0f%% blocked=%.0f%% | compress+upload busy=%.0f%% idle=%.0f%% | queue avg=%.1f/%d",
+                percent(elapsed - producerBlockedNanos, elapsed),
+                percent(producerBlockedNanos, elapsed),
+                percent(consumerBusyNanos, elapsed),
+                percent(consumerIdleNanos, elapsed),
+                avgQueued,
+                chunkCount);
+    }
+
+    private void handOff() throws IOException {
+        current.rowCount = rowCount;
+        queuedChunksSum += fullChunks.size();
+        handoffs++;
+        putFull(current);
+
+        long waitStart = System.nanoTime();
+        Chunk next = null;
+        while (next == null) {
+            checkFailure();
+            try {
+                next = freeChunks.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for a free chunk", e);
+            }
+        }
+        producerBlockedNanos += System.nanoTime() - waitStart;
+        current = next;
+    }
+
+    private void putFull(Chunk chunk) throws IOException {
+        try {
+            while (!fullChunks.offer(chunk, POLL_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+                checkFailure();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while handing off a chunk", e);
+        }
+    }
+
+    private void consume() {
+        synchronized (this) {
+            consumerThread = Thread.currentThread();
+        }
+        try {
+            while (true) {
+                long idleStart = System.nanoTime();
+                Chunk chunk = fullChunks.take();
+                long busyStart = System.nanoTime();
+                consumerIdleNanos += busyStart - idleStart;
+
+                if (chunk == Chunk.END || aborted) {
+                    return;
+                }
+
+                writeDownstream(chunk);
+                long rows = chunk.rowCount;
+                chunk.length = 0;
+                chunk.checkpointOffset = -1;
+                freeChunks.add(chunk);
+                progressListener.onRowsWritten(this, rows);
+
+                consumerBusyNanos += System.nanoTime() - busyStart;
+            }
+        } catch (Throwable e) {
+            failure = e;
+        } finally {
+            synchronized (this) {
+                consumerThread = null;
+            }
+            // Clears an interrupt from abort() before the thread goes back to the pool
+            Thread.interrupted();
+        }
+    }
+
+    private void writeDownstream(Chunk chunk) throws IOException {
+        int offset = chunk.checkpointOffset;
+        if (offset < 0) {
+            downstream.write(chunk.data, 0, chunk.length);
+            return;
+        }
+        downstream.write(chunk.data, 0, offset);
+        downstream.checkpoint(chunk.checkpointLastId, chunk.checkpointRows);
+        downstream.write(chunk.data, offset, chunk.length - offset);
+    }
+
+    private void checkFailure() throws IOException {
+        Throwable error = failure;
+        if (error instanceof IOException io) {
+            throw io;
+        }
+        if (error != null) {
+            throw new IOException("Export pipeline stage failed", error);
+        }
+    }
+
+    private static double percent(long part, long total) {
+        return part * 100.0 / total;
+    }
+
+    @FunctionalInterface
+    public interface ProgressListener {
+        void onRowsWritten(ExportPipeline pipeline, long rows);
+    }
+
+    private static final class Chunk {
+        static final Chunk END = new Chunk(0);
+
+        final byte[] data;
+        int length;
+        long rowCount;
+        int checkpointOffset = -1;
+        long checkpointLastId;
+        long checkpointRows;
+
+        Chunk(int size) {
+            this.data = new byte[size];
+        }
+    }
+}
@@ -1,34 +1,161 @@
 package com.seft.learn.example.service.export;
 
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.Nullable;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Progress of the exports running on this node. Exports only record their row count
+ * in memory; {@link #publish()} writes the counts that changed, for all running jobs
+ * in one statement, every {@code export.progress.flush-interval-ms}. Writing rows
+ * never waits on the database or needs a second connection for progress.
+ */
 @Component
 @RequiredArgsConstructor
+@Slf4j
 public class ExportProgressTracker {
 
     private final JdbcTemplate jdbcTemplate;
 
-    private static final int UPDATE_INTERVAL = 10000;
+    private static final int LOG_INTERVAL = 10000;
 
-    public boolean shouldUpdate(long processedRows) {
-        return processedRows % UPDATE_INTERVAL == 0;
+    private final Map<UUID, Progress> running = new ConcurrentHashMap<>();
+
+    public boolean shouldLog(long lastLoggedRows, long processedRows) {
+        return processedRows - lastLoggedRows >= LOG_INTERVAL;
+    }
+
+    /**
+     * Starts publishing the progress of {@code jobId}.
+     *
+     * @param startRows rows already exported by an earlier attempt
+     */
+    public Progress track(UUID jobId, long startRows) {
+        Progress progress = new Progress(startRows);
+        running.put(jobId, progress);
+        return progress;
+    }
+
+    /**
+     * Progress of {@code jobId} if it is running on this node.
+     */
+    public @Nullable Progress progressOf(UUID jobId) {
+        return running.get(jobId);
+    }
+
+    /**
+     * Stops publishing the progress of {@code jobId}; a completed job stores its final
+     * count itself.
+     */
+    public void untrack(UUID jobId) {
+        running.remove(jobId);
+    }
+
+    @Scheduled(fixedDelayString = "${export.progress.flush-interval-ms:1000}")
+    @Transactional
+    public void publish() {
+        List<UUID> jobIds = new ArrayList<>();
+        List<Long> rows = new ArrayList<>();
+        running.forEach((jobId, progress) -> {
+            long current = progress.rows.get();
+            if (current != progress.published) {
+                jobIds.add(jobId);
+                rows.add(current);
+            }
+        });
+        if (jobIds.isEmpty()) {
+            return;
+        }
+        try {
+            write(jobIds, rows);
+        } catch (RuntimeException e) {
+            // Progress is advisory; the next flush writes the then-current counts
+            log.warn("Failed to publish export progress for {} jobs", jobIds.size(), e);
+            return;
+        }
+        for (int i = 0; i < jobIds.size(); i++) {
+            Progress progress = running.get(jobIds.get(i));
+            if (progress != null) {
+                progress.published = rows.get(i);
+            }
+        }
     }
 
-    public void updateProgress(UUID jobId, long processedRows) {
+    private void write(List<UUID> jobIds, List<Long> rows) {
+        jdbcTemplate.update(con -> {
+            var ps = con.prepareStatement(
+                // Only RUNNING, so a flush racing the completion never overwrites the final count
+                "UPDATE export_jobs j SET processed_records = p.rows "
+                    + "FROM unnest(?::uuid[], ?::bigint[]) AS p(id, rows) "
+                    + "WHERE j.id = p.id AND j.status = 'RUNNING'"
+            );
+            ps.setArray(1, con.createArrayOf("uuid", jobIds.toArray()));
+            ps.setArray(2, con.createArrayOf("bigint", rows.toArray()));
+            return ps;
+        });
+    }
+
+    /**
+     * Replaces an estimated total with the exact count, unless the job already finished
+     * with its own exact total.
+     */
+    @Transactional
+    public void updateExactTotal(UUID jobId, long totalRecords) {
         jdbcTemplate.update(
-            "UPDATE export_jobs SET processed_records = ? WHERE id = ?",
-            processedRows, jobId
+            "UPDATE export_jobs SET total_records = ?, total_records_estimated = false "
+                + "WHERE id = ? AND total_records_estimated = true",
+            totalRecords, jobId
         );
     }
 
+    @Transactional
     public void updateMetrics(UUID jobId, long fileSizeBytes, double rowsPerSecond, long durationMs) {
         jdbcTemplate.update(
             "UPDATE export_jobs SET file_size_bytes = ?, rows_per_second = ?, duration_ms = ? WHERE id = ?",
             fileSizeBytes, rowsPerSecond, durationMs, jobId
         );
     }
+
+    /**
+     * Row count of one running export; set from the writing thread, read by the publisher.
+     */
+    public static final class Progress {
+
+        private final AtomicLong rows;
+        private final long startRows;
+        private final long startNanos = System.nanoTime();
+        private volatile long published = -1;
+
+        private Progress(long startRows) {
+            this.rows = new AtomicLong(startRows);
+            this.startRows = startRows;
+        }
+
+        public void set(long processedRows) {
+            rows.lazySet(processedRows);
+        }
+
+        public long rows() {
+            return rows.get();
+        }
+
+        /**
+         * Rows per second of this attempt.
+         */
+        public double rowsPerSecond() {
+            long elapsedNanos = System.nanoTime() - startNanos;
+            return elapsedNanos > 0 ? (rows.get() - startRows) * 1e9 / elapsedNanos : 0;
+        }
+    }
 }
@@ -0,0 +1,110 @@
+package com.seft.learn.example.service.export;
+
+import com.seft.learn.example.entity.ExportJob;
+import com.seft.learn.example.entity.ExportJob.ExportStatus;
+import com.seft.learn.example.repository.ExportJobRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.Nullable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Lets a repeated export request reuse an earlier job instead of scanning the users
+ * table again. A job is keyed by a fingerprint of its parameters, its pinned watermark
+ * ({@code max(id)}, {@code max(created_at)}) and the table's {@link TableStats}; the
+ * modification counter also changes on updates and deletes that leave the watermark
+ * alone. Entries older than {@code export.cache.ttl-minutes} are neither reused nor kept.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ExportResultCache {
+
+    // A running or queued job with the same fingerprint is reused too, so a burst of
+    // identical requests runs one export
+    private static final List<ExportStatus> REUSABLE = List.of(
+            ExportStatus.COMPLETED, ExportStatus.RUNNING, ExportStatus.PENDING);
+
+    private final ExportJobRepository exportJobRepository;
+    private final StreamingQueryExecutor queryExecutor;
+
+    @Value("${export.cache.ttl-minutes:60}")
+    private long ttlMinutes = 60;
+
+    /**
+     * Fingerprint of a job whose scope and watermark are pinned, or {@code null} when the
+     * cache is disabled or the table statistics are unavailable.
+     */
+    public @Nullable String fingerprint(ExportJob job) {
+        if (ttlMinutes <= 0) {
+            return null;
+        }
+        TableStats stats = queryExecutor.findTableStats();
+        if (stats == null) {
+            return null;
+        }
+        String key = String.join("|",
+                String.valueOf(job.getExportType()),
+                String.valueOf(job.getFormat()),
+                String.valueOf(job.getCompression()),
+                String.valueOf(job.getColumns()),
+                String.valueOf(job.getIdFrom()),
+                String.valueOf(job.getIdTo()),
+                String.valueOf(job.getCreatedFrom()),
+                String.valueOf(job.getCreatedTo()),
+                String.valueOf(job.getBaseJobId()),
+                String.valueOf(job.getDeltaSince()),
+                String.valueOf(job.getFirstId()),
+                String.valueOf(job.getWatermarkId()),
+                String.valueOf(job.getWatermarkCreatedAt()),
+                String.valueOf(stats.estimatedRows()),
+                String.valueOf(stats.modifications()));
+        return sha256(key);
+    }
+
+    /**
+     * The newest reusable job started within the freshness window with this fingerprint.
+     */
+    public @Nullable ExportJob find(String fingerprint) {
+        Instant freshAfter = Instant.now().minus(Duration.ofMinutes(ttlMinutes));
+        return exportJobRepository
+                .findFirstByFingerprintAndStatusInAndCreatedAtAfterOrderByCreatedAtDesc(fingerprint, REUSABLE, freshAfter)
+                .orElse(null);
+    }
+
+    /**
+     * Drops the fingerprints of jobs past the freshness window; the jobs and their files stay.
+     */
+    @Scheduled(fixedDelayString = "${export.cache.eviction-interval-ms:600000}")
+    @Transactional
+    public void evictStale() {
+        if (ttlMinutes <= 0) {
+            return;
+        }
+        int evicted = exportJobRepository.clearFingerprintsBefore(
+                Instant.now().minus(Duration.ofMinutes(ttlMinutes)));
+        if (evicted > 0) {
+            log.debug("Evicted {} stale export cache entries", evicted);
+        }
+    }
+
+    private static String sha256(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
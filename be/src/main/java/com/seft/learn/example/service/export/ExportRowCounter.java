@@ -0,0 +1,68 @@
+package com.seft.learn.example.service.export;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Sizes an export before it starts. By default the total comes from the planner's
+ * estimate, which costs no table scan, so rows start flowing immediately; the exact
+ * count optionally runs next to the export and replaces the estimate when it is done.
+ * With {@code export.count.mode=exact} the old up-front {@code count(*)} is used.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ExportRowCounter {
+
+    private final StreamingQueryExecutor queryExecutor;
+    private final ExportProgressTracker progressTracker;
+    @Qualifier("exportCountExecutor")
+    private final Executor countExecutor;
+
+    @Value("${export.count.mode:estimate}")
+    private String mode = "estimate";
+
+    @Value("${export.count.exact-in-background:true}")
+    private boolean exactInBackground = true;
+
+    public record RowCount(long rows, boolean estimated) {}
+
+    public RowCount count(IdRange range, UserQuery query) {
+        if (!"exact".equalsIgnoreCase(mode)) {
+            Long estimate = queryExecutor.estimateUsers(range, query);
+            if (estimate != null) {
+                return new RowCount(estimate, true);
+            }
+        }
+        return new RowCount(queryExecutor.countUsers(range, query), false);
+    }
+
+    /**
+     * Counts the rows exactly on a thread of its own and stores the result on the job; a
+     * no-op unless enabled. The count holds one more connection while it runs, and is
+     * skipped when every count thread is busy.
+     */
+    public void correctInBackground(UUID jobId, IdRange range, UserQuery query) {
+        if (!exactInBackground) {
+            return;
+        }
+        try {
+            CompletableFuture.runAsync(() -> progressTracker.updateExactTotal(jobId, queryExecutor.countUsers(range, query)),
+                            countExecutor)
+                    .exceptionally(e -> {
+                        log.warn("Exact row count failed, keeping the estimate: jobId={}", jobId, e);
+                        return null;
+                    });
+        } catch (RejectedExecutionException e) {
+            log.info("No count thread free, keeping the estimate: jobId={}", jobId);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.seft.learn.example.service.export;
+
+import java.io.IOException;
+
+/**
+ * Destination for encoded export bytes (e.g. a multipart S3 upload).
+ */
+public interface ExportSink {
+
+    void write(byte[] data, int offset, int length) throws IOException;
+
+    /**
+     * Marks a row boundary: every user with {@code id <= lastId} has been written and
+     * {@code rows} rows have been written in total. Resumable sinks may only cut
+     * restartable parts at such boundaries.
+     */
+    default void checkpoint(long lastId, long rows) throws IOException {
+    }
+}
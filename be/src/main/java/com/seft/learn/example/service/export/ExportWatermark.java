@@ -0,0 +1,17 @@
+package com.seft.learn.example.service.export;
+
+import org.jspecify.annotations.Nullable;
+
+import java.time.Instant;
+
+/**
+ * Bounds of the users table at one point in time. An export pinned to a watermark
+ * covers ids up to {@code maxId}; a delta export based on it starts after that id.
+ *
+ * <p>{@code snapshot} is the PostgreSQL snapshot {@code maxId} was read in
+ * ({@code pg_current_snapshot()} text), {@code null} on other databases. A transaction
+ * still open in it may insert an id at or below {@code maxId} and commit later, so the
+ * export waits for those transactions before reading.
+ */
+public record ExportWatermark(long minId, long maxId, @Nullable Instant maxCreatedAt, @Nullable String snapshot) {
+}
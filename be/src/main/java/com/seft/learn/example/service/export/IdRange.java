@@ -0,0 +1,40 @@
+package com.seft.learn.example.service.export;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Inclusive range of {@code users.id} values.
+ */
+public record IdRange(long minId, long maxId) {
+
+    public IdRange {
+        if (maxId < minId) {
+            throw new IllegalArgumentException("maxId must be >= minId: " + minId + ".." + maxId);
+        }
+    }
+
+    public long span() {
+        return maxId - minId + 1;
+    }
+
+    /**
+     * Splits the range into at most {@code partitions} contiguous, ascending sub-ranges
+     * of (nearly) equal id span.
+     */
+    public List<IdRange> split(int partitions) {
+        int count = (int) Math.min(Math.max(partitions, 1), span());
+        long step = (span() + count - 1) / count;
+
+        List<IdRange> ranges = new ArrayList<>(count);
+        long from = minId;
+        while (true) {
+            long to = maxId - from < step ? maxId : from + step - 1;
+            ranges.add(new IdRange(from, to));
+            if (to == maxId) {
+                return ranges;
+            }
+            from = to + 1;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.seft.learn.example.service.export;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Exports the users table as N id-range partitions, each streamed on its own worker
+ * and JDBC connection, and stitches the encoded partitions back into one ordered
+ * stream. Partitions are spooled to temp files, so a worker does not wait for the
+ * stitcher to reach its partition; a partition is only started once it is at most
+ * {@code workers} partitions past the one being stitched, so a slow partition holds the
+ * others back instead of the rest of the export piling up on local disk. At most
+ * {@code workers + 1} spools exist at a time, about {@code (workers + 1) /
+ * (workers * partitions-per-worker)} of the export as uncompressed CSV.
+ */
+@Component
+@Slf4j
+public class PartitionedExportRunner {
+
+    private static final int STITCH_BUFFER_SIZE = 64 * 1024;
+
+    private final StreamingQueryExecutor queryExecutor;
+    private final Executor partitionExecutor;
+
+    @Value("${export.parallel.workers:4}")
+    private int workers = 4;
+
+    @Value("${export.parallel.partitions-per-worker:4}")
+    private int partitionsPerWorker = 4;
+
+    public PartitionedExportRunner(StreamingQueryExecutor queryExecutor,
+                                   @Qualifier("exportPartitionExecutor") Executor partitionExecutor) {
+        this.queryExecutor = queryExecutor;
+        this.partitionExecutor = partitionExecutor;
+    }
+
+    public boolean isEnabled() {
+        return workers > 1;
+    }
+
+    /**
+     * Exports every user in {@code range} matching {@code query} into {@code sink}, in
+     * id order, with the query's columns.
+     *
+     * @param useCopy spool partitions with {@code COPY ... TO STDOUT} instead of a JDBC cursor
+     * @param stages  meters the workers' fetch and encode time is recorded in
+     * @return number of rows written
+     */
+    public long export(IdRange range, UserQuery query, ExportSink sink, boolean useCopy,
+                       ExportMeters.Stages stages, PartitionListener listener) throws IOException {
+        List<IdRange> partitions = range.split(workers * partitionsPerWorker);
+        AtomicBoolean aborted = new AtomicBoolean(false);
+        log.info("Starting partitioned export: range={}..{}, partitions={}, workers={}, copy={}",
+                range.minId(), range.maxId(), partitions.size(), workers, useCopy);
+
+        List<CompletableFuture<PartitionSpool>> spools = new ArrayList<>(partitions.size());
+        int aheadOfStitcher = workers + 1;
+
+        long totalRows = 0;
+        try {
+            for (int next = 0; next < partitions.size(); next++) {
+                int startUpTo = Math.min(next + aheadOfStitcher, partitions.size());
+                while (spools.size() < startUpTo) {
+                    IdRange partition = partitions.get(spools.size());
+                    spools.add(CompletableFuture.supplyAsync(
+                            () -> spool(partition, query, useCopy, stages, aborted), partitionExecutor));
+                }
+                PartitionSpool spool = awaitSpool(spools.get(next));
+                try {
+                    spool.copyTo(sink);
+                } finally {
+                    spool.delete();
+                }
+                totalRows += spool.rows();
+                listener.onPartitionStitched(spool.range(), spool.rows());
+            }
+        } catch (IOException | RuntimeException e) {
+            aborted.set(true);
+            spools.forEach(future -> future.thenAccept(PartitionSpool::delete));
+            throw e;
+        }
+        return totalRows;
+    }
+
+    private PartitionSpool spool(IdRange partition, UserQuery query, boolean useCopy, ExportMeters.Stages stages,
+                                 AtomicBoolean aborted) {
+        if (aborted.get()) {
+            throw new CancellationException("Export aborted");
+        }
+
+        Path file;
+        try {
+            file = Files.createTempFile("export-partition-", ".csv");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create partition spool", e);
+        }
+
+        long rows;
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), STITCH_BUFFER_SIZE)) {
+            rows = useCopy
+                    ? copyPartition(partition, query, out, stages)
+                    : encodePartition(partition, query, out, new StageClock(stages.fetch(), stages.encode()), aborted);
+        } catch (IOException e) {
+            deleteQuietly(file);
+            throw new UncheckedIOException("Failed to spool partition", e);
+        } catch (RuntimeException e) {
+            deleteQuietly(file);
+            throw e;
+        }
+
+        log.debug("Spooled partition {}..{}: {} rows", partition.minId(), partition.maxId(), rows);
+        return new PartitionSpool(partition, file, rows);
+    }
+
+    private long copyPartition(IdRange partition, UserQuery query, OutputStream out, ExportMeters.Stages stages) {
+        // The server encodes the CSV, so all of COPY counts as fetch time
+        long start = System.nanoTime();
+        long rows = queryExecutor.copyUsersCsv(out, partition, query);
+        stages.fetch().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return rows;
+    }
+
+    private long encodePartition(IdRange partition, UserQuery query, OutputStream out, StageClock clock,
+                                 AtomicBoolean aborted) throws IOException {
+        CsvRowEncoder encoder = new CsvRowEncoder(query);
+        AtomicLong rows = new AtomicLong();
+        queryExecutor.streamUsers(rs -> {
+            if (aborted.get()) {
+                throw new CancellationException("Export aborted");
+            }
+            try {
+                clock.rowStarted();
+                encoder.encodeRow(rs);
+                rows.incrementAndGet();
+                clock.rowEncoded();
+                if (encoder.isFull()) {
+                    clock.record();
+                    encoder.drainTo(out::write);
+                    clock.resume();
+                }
+            } catch (SQLException | IOException e) {
+                throw new RuntimeException("Failed to process row", e);
+            }
+        }, partition, query);
+        clock.record();
+        encoder.drainTo(out::write);
+        return rows.get();
+    }
+
+    private static PartitionSpool awaitSpool(CompletableFuture<PartitionSpool> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException io) {
+                throw io.getCause();
+            }
+            throw new RuntimeException("Partition export failed", cause);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Failed to delete partition spool {}", file, e);
+        }
+    }
+
+    @FunctionalInterface
+    public interface PartitionListener {
+        /**
+         * Called after every row of {@code partition} has been written to the sink.
+         */
+        void onPartitionStitched(IdRange partition, long rows) throws IOException;
+    }
+
+    private record PartitionSpool(IdRange range, Path file, long rows) {
+
+        void copyTo(ExportSink sink) throws IOException {
+            byte[] buffer = new byte[STITCH_BUFFER_SIZE];
+            try (InputStream in = Files.newInputStream(file)) {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    sink.write(buffer, 0, read);
+                }
+            }
+        }
+
+        void delete() {
+            deleteQuietly(file);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.seft.learn.example.service.export;
+
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splits the time of a cursor loop between the driver (fetching the next row) and the
+ * row callback (encoding it). Time is summed per row and recorded once per block, so
+ * the hot loop only reads the clock. Not thread-safe; one per cursor.
+ */
+public class StageClock {
+
+    private final Timer fetch;
+    private final Timer encode;
+    private long mark = System.nanoTime();
+    private long fetchNanos;
+    private long encodeNanos;
+
+    public StageClock(Timer fetch, Timer encode) {
+        this.fetch = fetch;
+        this.encode = encode;
+    }
+
+    /**
+     * Called when the callback receives a row; the time since the last row was fetching.
+     */
+    public void rowStarted() {
+        long now = System.nanoTime();
+        fetchNanos += now - mark;
+        mark = now;
+    }
+
+    /**
+     * Called when the row is encoded.
+     */
+    public void rowEncoded() {
+        long now = System.nanoTime();
+        encodeNanos += now - mark;
+        mark = now;
+    }
+
+    /**
+     * Records the block measured so far. Time until the next {@link #resume()} (e.g.
+     * handing the block downstream) is left out of both stages.
+     */
+    public void record() {
+        if (fetchNanos > 0) {
+            fetch.record(fetchNanos, TimeUnit.NANOSECONDS);
+        }
+        if (encodeNanos > 0) {
+            encode.record(encodeNanos, TimeUnit.NANOSECONDS);
+        }
+        fetchNanos = 0;
+        encodeNanos = 0;
+    }
+
+    public void resume() {
+        mark = System.nanoTime();
+    }
+}
@@ -0,0 +1,10 @@
+package com.seft.learn.example.service.export;
+
+import java.util.UUID;
+
+/**
+ * The job an export request was queued as; {@code reused} when it is an earlier job with
+ * the same parameters on an unchanged table, which may still be queued or running.
+ */
+public record StartedExport(UUID jobId, boolean reused) {
+}
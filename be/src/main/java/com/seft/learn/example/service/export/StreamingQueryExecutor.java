@@ -2,11 +2,23 @@ package com.seft.learn.example.service.export;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.Nullable;
+import org.postgresql.PGConnection;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 @Component
 @RequiredArgsConstructor
@@ -17,6 +29,11 @@ public class StreamingQueryExecutor {
 
     private static final int DEFAULT_FETCH_SIZE = 10000;
 
+    // Row estimate of the top plan node, e.g. "Seq Scan on users  (cost=0.00..1834.00 rows=100000 width=4)"
+    private static final Pattern PLAN_ROWS = Pattern.compile("rows=(\\d+)");
+
+    private volatile @Nullable Boolean copySupported;
+
     public void streamUsers(Consumer<ResultSet> rowHandler) {
         streamUsers(rowHandler, DEFAULT_FETCH_SIZE);
     }
@@ -37,8 +54,308 @@ public class StreamingQueryExecutor {
         });
     }
 
+    /**
+     * Streams the users whose id falls into {@code range}, in id order, so that
+     * consecutive ranges can be concatenated into one ordered export.
+     */
+    public void streamUsers(Consumer<ResultSet> rowHandler, IdRange range) {
+        streamUsers(rowHandler, range, UserQuery.ALL);
+    }
+
+    /**
+     * Like {@link #streamUsers(Consumer, IdRange)}, restricted to {@code query}'s rows and
+     * selecting {@link UserQuery#cursorSelectList()}. The id bounds are served by the
+     * primary key and the {@code created_at} bounds by {@code idx_users_created_at};
+     * the planner picks whichever is more selective.
+     */
+    public void streamUsers(Consumer<ResultSet> rowHandler, IdRange range, UserQuery query) {
+        List<String> conditions = rangeConditions(query, true);
+        String sql = "SELECT " + query.cursorSelectList() + " FROM users WHERE "
+                + String.join(" AND ", conditions) + " ORDER BY id";
+        Object[] params = rangeParams(range, query);
+
+        jdbcTemplate.query(con -> {
+            var ps = con.prepareStatement(
+                sql,
+                ResultSet.TYPE_FORWARD_ONLY,
+                ResultSet.CONCUR_READ_ONLY
+            );
+            ps.setFetchSize(DEFAULT_FETCH_SIZE);
+            for (int i = 0; i < params.length; i++) {
+                ps.setObject(i + 1, params[i]);
+            }
+            return ps;
+        }, rs -> {
+            rowHandler.accept(rs);
+        });
+    }
+
+    /**
+     * Like {@link #streamUsers(Consumer, IdRange, UserQuery)}, read in keyset-ordered
+     * chunks of {@code chunkRows} ({@code id > ? AND id <= ? ... ORDER BY id LIMIT ?}).
+     * Each chunk is its own short statement, so the connection goes back to the pool and
+     * no snapshot is held between chunks. {@code range}'s upper bound pins the rows to
+     * those present when the job was created; later inserts are never read.
+     */
+    public void streamUsersChunked(Consumer<ResultSet> rowHandler, IdRange range, UserQuery query, int chunkRows) {
+        List<String> conditions = new ArrayList<>();
+        conditions.add("id > ? AND id <= ?");
+        conditions.addAll(createdConditions(query, true));
+        String sql = "SELECT " + query.cursorSelectList() + " FROM users WHERE "
+                + String.join(" AND ", conditions) + " ORDER BY id LIMIT ?";
+
+        long afterId = range.minId() - 1;
+        while (afterId < range.maxId()) {
+            List<Object> params = new ArrayList<>();
+            params.add(afterId);
+            params.add(range.maxId());
+            addCreatedParams(params, query);
+            params.add(chunkRows);
+
+            long[] chunk = {0, afterId};
+            jdbcTemplate.query(con -> {
+                var ps = con.prepareStatement(
+                    sql,
+                    ResultSet.TYPE_FORWARD_ONLY,
+                    ResultSet.CONCUR_READ_ONLY
+                );
+                ps.setFetchSize(Math.min(chunkRows, DEFAULT_FETCH_SIZE));
+                for (int i = 0; i < params.size(); i++) {
+                    ps.setObject(i + 1, params.get(i));
+                }
+                return ps;
+            }, rs -> {
+                // cursorSelectList() always selects id first
+                chunk[1] = rs.getLong(1);
+                chunk[0]++;
+                rowHandler.accept(rs);
+            });
+            if (chunk[0] < chunkRows) {
+                return;
+            }
+            afterId = chunk[1];
+        }
+    }
+
+    /**
+     * Whether the data source is PostgreSQL and can serve {@code COPY ... TO STDOUT}.
+     */
+    public boolean supportsCopy() {
+        Boolean supported = copySupported;
+        if (supported == null) {
+            supported = Boolean.TRUE.equals(jdbcTemplate.execute(
+                    (ConnectionCallback<Boolean>) con -> con.isWrapperFor(PGConnection.class)));
+            copySupported = supported;
+        }
+        return supported;
+    }
+
+    /**
+     * Streams users as CSV rows (every field quoted, no header) produced by the server
+     * through {@code COPY ... TO STDOUT}; rows never materialize as {@link ResultSet}s.
+     *
+     * @param range optional id range; when set, rows are copied in id order
+     * @return number of rows copied
+     */
+    public long copyUsersCsv(OutputStream out, @Nullable IdRange range) {
+        return copyUsersCsv(out, range, UserQuery.ALL);
+    }
+
+    /**
+     * Like {@link #copyUsersCsv(OutputStream, IdRange)}, restricted to {@code query}'s rows
+     * and columns.
+     */
+    public long copyUsersCsv(OutputStream out, @Nullable IdRange range, UserQuery query) {
+        // COPY does not take bind parameters; the bounds are longs and formatted timestamps
+        List<String> conditions = new ArrayList<>();
+        if (range != null) {
+            conditions.add("id BETWEEN " + range.minId() + " AND " + range.maxId());
+        }
+        conditions.addAll(createdConditions(query, false));
+
+        String select = "SELECT " + query.copySelectList() + " FROM users";
+        if (!conditions.isEmpty()) {
+            select += " WHERE " + String.join(" AND ", conditions);
+        }
+        if (range != null) {
+            select += " ORDER BY id";
+        }
+        String sql = "COPY (" + select + ") TO STDOUT WITH (FORMAT csv, FORCE_QUOTE *)";
+
+        Long rows = jdbcTemplate.execute((ConnectionCallback<Long>) con -> {
+            try {
+                return con.unwrap(PGConnection.class).getCopyAPI().copyOut(sql, out);
+            } catch (IOException e) {
+                throw new UncheckedIOException("COPY TO STDOUT failed", e);
+            }
+        });
+        return rows != null ? rows : 0L;
+    }
+
     public long countUsers() {
         Long count = jdbcTemplate.queryForObject("SELECT count(*) FROM users", Long.class);
         return count != null ? count : 0L;
     }
+
+    /**
+     * Counts only the rows in scope, using the same predicates as the export queries.
+     */
+    public long countUsers(IdRange range, UserQuery query) {
+        String sql = "SELECT count(*) FROM users WHERE " + String.join(" AND ", rangeConditions(query, true));
+        Long count = jdbcTemplate.queryForObject(sql, Long.class, rangeParams(range, query));
+        return count != null ? count : 0L;
+    }
+
+    /**
+     * The planner's row estimate for {@link #countUsers(IdRange, UserQuery)}, taken from
+     * {@code EXPLAIN} without running the count, or {@code null} when the data source is
+     * not PostgreSQL. Within a few percent on analyzed tables; never used for correctness.
+     */
+    public @Nullable Long estimateUsers(IdRange range, UserQuery query) {
+        if (!supportsCopy()) {
+            return null;
+        }
+        // Literal bounds, as for COPY, so the plan is made for these values
+        List<String> conditions = new ArrayList<>();
+        conditions.add("id BETWEEN " + range.minId() + " AND " + range.maxId());
+        conditions.addAll(createdConditions(query, false));
+        List<String> plan = jdbcTemplate.queryForList(
+            "EXPLAIN SELECT 1 FROM users WHERE " + String.join(" AND ", conditions), String.class);
+        if (plan.isEmpty()) {
+            return null;
+        }
+        Matcher rows = PLAN_ROWS.matcher(plan.get(0));
+        return rows.find() ? Long.parseLong(rows.group(1)) : null;
+    }
+
+    /**
+     * Returns the current id and {@code created_at} bounds of the users table, or
+     * {@code null} when it is empty. Only min/max aggregates, so each is a single
+     * index probe. On PostgreSQL the snapshot of the same statement comes with them.
+     */
+    public @Nullable ExportWatermark findWatermark() {
+        String snapshot = supportsCopy() ? "pg_current_snapshot()::text" : "NULL";
+        List<ExportWatermark> watermarks = jdbcTemplate.query(
+            "SELECT min(id), max(id), max(created_at), " + snapshot + " FROM users HAVING max(id) IS NOT NULL",
+            (rs, rowNum) -> {
+                Timestamp maxCreatedAt = rs.getTimestamp(3);
+                return new ExportWatermark(rs.getLong(1), rs.getLong(2),
+                        maxCreatedAt != null ? maxCreatedAt.toInstant() : null, rs.getString(4));
+            }
+        );
+        return watermarks.isEmpty() ? null : watermarks.get(0);
+    }
+
+    /**
+     * Waits until no transaction that was in progress in {@code snapshot} (text of
+     * {@code pg_current_snapshot()}) still is, polling every {@code pollMs}. Sequence ids
+     * are drawn outside transactions, so such a transaction may hold an id below a
+     * watermark read in the snapshot; once it ended, every later snapshot sees all rows
+     * up to that watermark there will ever be.
+     *
+     * @return {@code false} if some are still open after {@code timeoutMs}
+     */
+    public boolean awaitTransactions(String snapshot, long timeoutMs, long pollMs) throws InterruptedException {
+        long deadline = System.nanoTime() + timeoutMs * 1_000_000;
+        while (true) {
+            Integer open = jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM pg_snapshot_xip(?::pg_snapshot) AS t(xid) "
+                    + "WHERE pg_xact_status(t.xid) = 'in progress'",
+                Integer.class, snapshot);
+            if (open == null || open == 0) {
+                return true;
+            }
+            if (System.nanoTime() - deadline > 0) {
+                return false;
+            }
+            Thread.sleep(pollMs);
+        }
+    }
+
+    /**
+     * Reads the users table's {@link TableStats}, or {@code null} when the data source is
+     * not PostgreSQL.
+     */
+    public @Nullable TableStats findTableStats() {
+        if (!supportsCopy()) {
+            return null;
+        }
+        List<TableStats> stats = jdbcTemplate.query(
+            "SELECT greatest(c.reltuples, 0)::bigint, "
+                + "coalesce(s.n_tup_ins + s.n_tup_upd + s.n_tup_del, 0) "
+                + "FROM pg_class c LEFT JOIN pg_stat_user_tables s ON s.relid = c.oid "
+                + "WHERE c.oid = 'users'::regclass",
+            (rs, rowNum) -> new TableStats(rs.getLong(1), rs.getLong(2))
+        );
+        return stats.isEmpty() ? null : stats.get(0);
+    }
+
+    /**
+     * Id bounds of the users inside {@code query}'s {@code created_at} window, found
+     * through {@code idx_users_created_at}, or {@code null} if the window is empty.
+     * Lets a time-window export scan only the id range the window spans.
+     */
+    public @Nullable IdRange findIdRange(UserQuery query) {
+        List<String> conditions = createdConditions(query, true);
+        String where = conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions);
+        List<Object> params = new ArrayList<>();
+        addCreatedParams(params, query);
+
+        List<IdRange> ranges = jdbcTemplate.query(
+            "SELECT min(id), max(id) FROM users" + where + " HAVING max(id) IS NOT NULL",
+            (rs, rowNum) -> new IdRange(rs.getLong(1), rs.getLong(2)),
+            params.toArray()
+        );
+        return ranges.isEmpty() ? null : ranges.get(0);
+    }
+
+    /**
+     * {@code id BETWEEN ? AND ?} followed by the {@code created_at} bounds, either as
+     * {@code ?} placeholders or as literals.
+     */
+    private static List<String> rangeConditions(UserQuery query, boolean bind) {
+        List<String> conditions = new ArrayList<>();
+        conditions.add("id BETWEEN ? AND ?");
+        conditions.addAll(createdConditions(query, bind));
+        return conditions;
+    }
+
+    private static List<String> createdConditions(UserQuery query, boolean bind) {
+        List<String> conditions = new ArrayList<>();
+        Instant createdFrom = query.createdFrom();
+        if (createdFrom != null) {
+            conditions.add("created_at >= " + (bind ? "?" : timestampLiteral(createdFrom)));
+        }
+        Instant createdTo = query.createdTo();
+        if (createdTo != null) {
+            conditions.add("created_at < " + (bind ? "?" : timestampLiteral(createdTo)));
+        }
+        return conditions;
+    }
+
+    private static Object[] rangeParams(IdRange range, UserQuery query) {
+        List<Object> params = new ArrayList<>();
+        params.add(range.minId());
+        params.add(range.maxId());
+        addCreatedParams(params, query);
+        return params.toArray();
+    }
+
+    private static void addCreatedParams(List<Object> params, UserQuery query) {
+        Instant createdFrom = query.createdFrom();
+        if (createdFrom != null) {
+            params.add(Timestamp.from(createdFrom));
+        }
+        Instant createdTo = query.createdTo();
+        if (createdTo != null) {
+            params.add(Timestamp.from(createdTo));
+        }
+    }
+
+    /**
+     * Same wall-clock rendering the driver uses for {@link Timestamp} parameters.
+     */
+    private static String timestampLiteral(Instant instant) {
+        return "'" + Timestamp.from(instant) + "'::timestamp";
+    }
 }
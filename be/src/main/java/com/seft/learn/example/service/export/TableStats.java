@@ -0,0 +1,9 @@
+package com.seft.learn.example.service.export;
+
+/**
+ * Planner row estimate ({@code pg_class.reltuples}) of the users table and the number
+ * of rows inserted, updated or deleted since its statistics were last reset. Both are
+ * catalog reads; neither touches the table itself.
+ */
+public record TableStats(long estimatedRows, long modifications) {
+}
@@ -0,0 +1,57 @@
+package com.seft.learn.example.service.export;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Exportable columns of the users table.
+ */
+public enum UserColumn {
+    ID("id"),
+    EMAIL("email"),
+    NAME("name"),
+    CREATED_AT("created_at");
+
+    public static final List<UserColumn> ALL = List.of(values());
+
+    private final String columnName;
+
+    UserColumn(String columnName) {
+        this.columnName = columnName;
+    }
+
+    public String columnName() {
+        return columnName;
+    }
+
+    /**
+     * Parses a comma-separated column list such as {@code id,email}.
+     *
+     * @throws IllegalArgumentException on an unknown column name
+     */
+    public static List<UserColumn> parseList(String columns) {
+        List<UserColumn> parsed = new ArrayList<>();
+        for (String name : columns.split(",")) {
+            String trimmed = name.trim().toLowerCase(Locale.ROOT);
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            UserColumn column = null;
+            for (UserColumn candidate : values()) {
+                if (candidate.columnName.equals(trimmed)) {
+                    column = candidate;
+                }
+            }
+            if (column == null) {
+                throw new IllegalArgumentException("Unknown column: " + name.trim());
+            }
+            parsed.add(column);
+        }
+        return parsed;
+    }
+
+    public static String formatList(List<UserColumn> columns) {
+        return String.join(",", columns.stream().map(UserColumn::columnName).toList());
+    }
+}
@@ -0,0 +1,79 @@
+package com.seft.learn.example.service.export;
+
+import org.jspecify.annotations.Nullable;
+
+import java.time.Instant;
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * Columns and row filter of an export, applied on top of an {@link IdRange}.
+ *
+ * <p>Cursor reads always select {@code id} first, whether or not it is exported, since
+ * it is the keyset position checkpoints are taken at; the projected columns follow.
+ *
+ * @param columns     exported columns, in output order
+ * @param createdFrom only users with {@code created_at >= createdFrom}, or {@code null}
+ * @param createdTo   only users with {@code created_at < createdTo}, or {@code null}
+ */
+public record UserQuery(List<UserColumn> columns, @Nullable Instant createdFrom, @Nullable Instant createdTo) {
+
+    public static final UserQuery ALL = new UserQuery(UserColumn.ALL, null, null);
+
+    public UserQuery {
+        columns = List.copyOf(columns);
+        if (columns.isEmpty()) {
+            throw new IllegalArgumentException("At least one column must be exported");
+        }
+        if (EnumSet.copyOf(columns).size() != columns.size()) {
+            throw new IllegalArgumentException("Duplicate export column: " + UserColumn.formatList(columns));
+        }
+        if (createdFrom != null && createdTo != null && !createdFrom.isBefore(createdTo)) {
+            throw new IllegalArgumentException("createdFrom must be before createdTo");
+        }
+    }
+
+    public boolean hasCreatedRange() {
+        return createdFrom != null || createdTo != null;
+    }
+
+    /**
+     * {@code SELECT} list for cursor reads: {@code id}, then the other projected columns.
+     */
+    public String cursorSelectList() {
+        StringBuilder sql = new StringBuilder("id");
+        for (UserColumn column : columns) {
+            if (column != UserColumn.ID) {
+                sql.append(", ").append(column.columnName());
+            }
+        }
+        return sql.toString();
+    }
+
+    /**
+     * 1-based {@link java.sql.ResultSet} index of each projected column in
+     * {@link #cursorSelectList()}, in output order.
+     */
+    public int[] cursorIndexes() {
+        int[] indexes = new int[columns.size()];
+        int next = 2;
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = columns.get(i) == UserColumn.ID ? 1 : next++;
+        }
+        return indexes;
+    }
+
+    /**
+     * {@code SELECT} list for {@code COPY}: exactly the projected columns. {@code FORCE_QUOTE}
+     * leaves a {@code NULL} unquoted, so every column but {@code id} is coalesced to
+     * {@code ''} and comes out as {@code ""}, as {@link CsvRowEncoder} writes it.
+     */
+    public String copySelectList() {
+        return String.join(", ", columns.stream().map(UserQuery::copyColumn).toList());
+    }
+
+    private static String copyColumn(UserColumn column) {
+        String name = column.columnName();
+        return column == UserColumn.ID ? name : "COALESCE(" + name + "::text, '') AS " + name;
+    }
+}
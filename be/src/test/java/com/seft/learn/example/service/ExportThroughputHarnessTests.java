@@ -0,0 +1,319 @@
+package com.seft.learn.example.service;
+
+import com.seft.learn.example.dto.ExportRequest;
+import com.seft.learn.example.entity.ExportJob;
+import com.seft.learn.example.entity.ExportJob.Compression;
+import com.seft.learn.example.entity.ExportJob.ExportFormat;
+import com.seft.learn.example.entity.ExportJob.ExportStatus;
+import com.seft.learn.example.repository.ExportJobRepository;
+import com.github.luben.zstd.ZstdInputStream;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import net.jpountz.lz4.LZ4FrameInputStream;
+import org.apache.parquet.column.page.PageReadStore;
+import org.apache.parquet.example.data.Group;
+import org.apache.parquet.example.data.simple.convert.GroupRecordConverter;
+import org.apache.parquet.hadoop.ParquetFileReader;
+import org.apache.parquet.io.ColumnIOFactory;
+import org.apache.parquet.io.LocalInputFile;
+import org.apache.parquet.io.MessageColumnIO;
+import org.apache.parquet.io.RecordReader;
+import org.apache.parquet.schema.MessageType;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs exports end to end, queue to completed upload, against an embedded PostgreSQL
+ * seeded with {@code harness.users} users and an {@link InProcessS3Server}, and logs
+ * rows/s, MB/s, peak heap and part latency percentiles per format and codec. Each
+ * uploaded object is decoded back and every user checked to be in it exactly once, in
+ * id order and with its seeded values.
+ *
+ * <p>Tunable with system properties, e.g.
+ * {@code ./gradlew test --tests '*ExportThroughputHarnessTests' -Dharness.users=5000000}:
+ * {@code harness.users} (default 1,000,000), {@code harness.s3.latency-ms} (base part
+ * latency, default 20) and {@code harness.s3.failure-rate} (share of part uploads
+ * failed with a 500, default 0.02).
+ */
+@SpringBootTest
+class ExportThroughputHarnessTests {
+
+	private static final Logger log = LoggerFactory.getLogger(ExportThroughputHarnessTests.class);
+
+	private static final long USERS = Long.getLong("harness.users", 1_000_000);
+	private static final long TIMEOUT_MS = 600_000;
+
+	private static EmbeddedPostgres postgres;
+	private static InProcessS3Server s3;
+
+	@Autowired
+	private ExportService exportService;
+
+	@Autowired
+	private ExportJobRepository exportJobRepository;
+
+	@DynamicPropertySource
+	static void properties(DynamicPropertyRegistry registry) throws IOException, SQLException {
+		if (postgres == null) {
+			postgres = EmbeddedPostgres.start();
+			seedUsers();
+			s3 = new InProcessS3Server(
+					Long.getLong("harness.s3.latency-ms", 20),
+					Double.parseDouble(System.getProperty("harness.s3.failure-rate", "0.02")));
+		}
+
+		registry.add("spring.datasource.url", () -> postgres.getJdbcUrl("postgres", "postgres"));
+		registry.add("spring.datasource.username", () -> "postgres");
+		registry.add("spring.datasource.password", () -> "postgres");
+		registry.add("aws.s3.endpoint", s3::endpoint);
+		// Every run scans the table, instead of reusing the previous run's job
+		registry.add("export.cache.ttl-minutes", () -> "0");
+		registry.add("export.queue.poll-interval-ms", () -> "100");
+		registry.add("export.upload.retry-backoff-ms", () -> "50");
+	}
+
+	@AfterAll
+	static void stop() throws IOException {
+		s3.close();
+		postgres.close();
+	}
+
+	@ParameterizedTest(name = "{0} {1}")
+	@CsvSource({"CSV, NONE", "CSV, GZIP", "CSV, ZSTD", "CSV, LZ4", "PARQUET, NONE"})
+	void export(ExportFormat format, Compression compression) throws InterruptedException, IOException {
+		s3.drainPartLatenciesMs();
+		resetPeakHeap();
+		int failuresBefore = s3.injectedFailures();
+
+		UUID jobId = exportService.startExport(ExportRequest.of(format, compression, null)).jobId();
+		ExportJob job = awaitFinished(jobId);
+
+		assertEquals(ExportStatus.COMPLETED, job.getStatus(), job.getErrorMessage());
+		assertEquals(USERS, job.getProcessedRecords());
+		assertEquals(job.getFileSizeBytes(), s3.objectSize(job.getS3Key()));
+		if (format == ExportFormat.PARQUET) {
+			verifyParquet(job.getS3Key());
+		} else {
+			verifyCsv(job.getS3Key(), compression);
+		}
+
+		double seconds = job.getDurationMs() / 1000.0;
+		List<Double> latencies = s3.drainPartLatenciesMs();
+		assertFalse(latencies.isEmpty(), "no parts uploaded");
+		log.info("{} {}: {} rows in {}s, {} rows/s, {} MB/s uncompressed, {} MB/s uploaded, peak heap {} MB, "
+						+ "{} parts p50={}ms p95={}ms p99={}ms max={}ms, {} injected failures",
+				format, compression, job.getProcessedRecords(), fmt(seconds),
+				fmt(job.getProcessedRecords() / seconds),
+				fmt(megabytes(job.getUncompressedSizeBytes()) / seconds),
+				fmt(megabytes(job.getFileSizeBytes()) / seconds),
+				fmt(megabytes(peakHeapBytes())),
+				latencies.size(), fmt(percentile(latencies, 50)), fmt(percentile(latencies, 95)),
+				fmt(percentile(latencies, 99)), fmt(latencies.get(latencies.size() - 1)),
+				s3.injectedFailures() - failuresBefore);
+	}
+
+	private ExportJob awaitFinished(UUID jobId) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+		while (System.currentTimeMillis() < deadline) {
+			ExportJob job = exportJobRepository.findById(jobId).orElseThrow();
+			if (job.getStatus() == ExportStatus.COMPLETED || job.getStatus() == ExportStatus.FAILED) {
+				return job;
+			}
+			Thread.sleep(200);
+		}
+		throw new AssertionError("Export " + jobId + " did not finish within " + TIMEOUT_MS + "ms");
+	}
+
+	private static void verifyCsv(String key, Compression compression) throws IOException {
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+				decompress(s3.openObject(key), compression), StandardCharsets.UTF_8), 1 << 16)) {
+			assertEquals("\"id\",\"email\",\"name\",\"created_at\"", reader.readLine(), "header");
+			UserSequence users = new UserSequence();
+			String line;
+			while ((line = reader.readLine()) != null) {
+				List<String> fields = parseCsvLine(line);
+				assertEquals(4, fields.size(), line);
+				users.check(Long.parseLong(fields.get(0)), fields.get(1), fields.get(2));
+			}
+			users.checkComplete();
+		}
+	}
+
+	private static void verifyParquet(String key) throws IOException {
+		Path file = Files.createTempFile("harness-", ".parquet");
+		try {
+			try (InputStream in = s3.openObject(key)) {
+				Files.copy(in, file, StandardCopyOption.REPLACE_EXISTING);
+			}
+			try (ParquetFileReader reader = ParquetFileReader.open(new LocalInputFile(file))) {
+				assertEquals(USERS, reader.getRecordCount(), "rows in the footer");
+				MessageType schema = reader.getFooter().getFileMetaData().getSchema();
+				MessageColumnIO columns = new ColumnIOFactory().getColumnIO(schema);
+				UserSequence users = new UserSequence();
+				PageReadStore rowGroup;
+				while ((rowGroup = reader.readNextRowGroup()) != null) {
+					RecordReader<Group> records = columns.getRecordReader(rowGroup, new GroupRecordConverter(schema));
+					for (long i = 0; i < rowGroup.getRowCount(); i++) {
+						Group user = records.read();
+						users.check(user.getLong("id", 0), user.getString("email", 0), user.getString("name", 0));
+					}
+				}
+				users.checkComplete();
+			}
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	// Every codec's decoder reads concatenated members/frames, as a resumed upload writes them
+	private static InputStream decompress(InputStream in, Compression compression) throws IOException {
+		return switch (compression) {
+			case NONE -> in;
+			case GZIP -> new GZIPInputStream(in, 1 << 16);
+			case ZSTD -> new ZstdInputStream(in);
+			case LZ4 -> new LZ4FrameInputStream(in);
+		};
+	}
+
+	// Fields of a line the export wrote: every field quoted, quotes doubled
+	private static List<String> parseCsvLine(String line) {
+		List<String> fields = new ArrayList<>();
+		StringBuilder field = new StringBuilder();
+		int i = 0;
+		while (i < line.length()) {
+			assertEquals('"', line.charAt(i), line);
+			i++;
+			while (true) {
+				char c = line.charAt(i++);
+				if (c == '"') {
+					if (i < line.length() && line.charAt(i) == '"') {
+						field.append('"');
+						i++;
+					} else {
+						break;
+					}
+				} else {
+					field.append(c);
+				}
+			}
+			fields.add(field.toString());
+			field.setLength(0);
+			if (i < line.length()) {
+				assertEquals(',', line.charAt(i++), line);
+			}
+		}
+		return fields;
+	}
+
+	/**
+	 * Checks users as they come: ids strictly ascending from 1 without gaps, so none is
+	 * missing or repeated, each with the email and name {@link #seedUsers()} gave it.
+	 */
+	private static final class UserSequence {
+
+		private long expectedId = 1;
+
+		void check(long id, String email, String name) {
+			assertEquals(expectedId, id, "next id");
+			assertEquals("user" + id + "@example.com", email, "email of " + id);
+			String expectedName = id % 10 == 0 ? "Nguyễn Văn " + id
+					: id % 10 == 1 ? "Smith, \"Jo\" " + id
+					: "User " + id;
+			assertEquals(expectedName, name, "name of " + id);
+			expectedId++;
+		}
+
+		void checkComplete() {
+			assertTrue(expectedId - 1 == USERS, "exported " + (expectedId - 1) + " of " + USERS + " users");
+		}
+	}
+
+	// Same shape as scripts/02-generate-10m-users.sql, with some quoted and non-ASCII names
+	private static void seedUsers() throws SQLException {
+		try (Connection connection = postgres.getPostgresDatabase().getConnection();
+			 Statement statement = connection.createStatement()) {
+			statement.execute("""
+					CREATE TABLE users (
+					    id SERIAL PRIMARY KEY,
+					    email VARCHAR(255) NOT NULL,
+					    name VARCHAR(255) NOT NULL,
+					    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+					)""");
+			statement.execute("CREATE INDEX idx_users_created_at ON users(created_at)");
+			try (PreparedStatement insert = connection.prepareStatement("""
+					INSERT INTO users (email, name, created_at)
+					SELECT 'user' || gs || '@example.com',
+					       CASE WHEN gs % 10 = 0 THEN 'Nguyễn Văn ' || gs
+					            WHEN gs % 10 = 1 THEN 'Smith, "Jo" ' || gs
+					            ELSE 'User ' || gs END,
+					       TIMESTAMP '2020-01-01' + gs * INTERVAL '1 second'
+					FROM generate_series(1, ?) AS gs""")) {
+				insert.setLong(1, USERS);
+				insert.executeUpdate();
+			}
+			statement.execute("ANALYZE users");
+		}
+	}
+
+	private static void resetPeakHeap() {
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				pool.resetPeakUsage();
+			}
+		}
+	}
+
+	// Sum of the per-pool peaks: an upper bound, the pools need not peak together
+	private static long peakHeapBytes() {
+		long peak = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				peak += pool.getPeakUsage().getUsed();
+			}
+		}
+		return peak;
+	}
+
+	private static double percentile(List<Double> sorted, int percentile) {
+		int index = (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1;
+		return sorted.get(Math.max(index, 0));
+	}
+
+	private static double megabytes(long bytes) {
+		return bytes / (1024.0 * 1024.0);
+	}
+
+	private static String fmt(double value) {
+		return String.format("%.1f", value);
+	}
+}
@@ -0,0 +1,383 @@
+package com.seft.learn.example.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Path-style S3 endpoint on localhost covering what the export path calls: bucket
+ * head/create/CORS, multipart create/upload/list/complete/abort and plain puts. Bodies
+ * are hashed for the ETag and spooled to a temporary directory, so large exports don't
+ * fill the heap; completing an upload assembles the parts it lists, in order, into the
+ * object, which {@link #openObject} reads back.
+ *
+ * <p>Every part upload waits {@code partLatencyMs} (plus up to as much jitter) and fails
+ * with a 500 {@code InternalError} at {@code failureRate}, so retries and in-flight
+ * limits are exercised. Part latencies are recorded as seen by the server, from
+ * request to response.
+ */
+class InProcessS3Server implements AutoCloseable {
+
+	private static final String XMLNS = "http://s3.amazonaws.com/doc/2006-03-01/";
+	// <Part> of a CompleteMultipartUpload request; the SDK may write ETag or PartNumber first
+	private static final Pattern COMPLETED_PART = Pattern.compile(
+			"<Part>\\s*(?:<ETag>([^<]*)</ETag>\\s*<PartNumber>(\\d+)</PartNumber>|<PartNumber>(\\d+)</PartNumber>\\s*<ETag>([^<]*)</ETag>)");
+
+	private final HttpServer server;
+	private final ExecutorService executor = Executors.newFixedThreadPool(64);
+	private final long partLatencyMs;
+	private final double failureRate;
+	private final Map<String, Upload> uploads = new ConcurrentHashMap<>();
+	private final Map<String, Path> objects = new ConcurrentHashMap<>();
+	private final Path directory;
+	private final ConcurrentLinkedQueue<Long> partLatenciesNanos = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger injectedFailures = new AtomicInteger();
+
+	InProcessS3Server(long partLatencyMs, double failureRate) throws IOException {
+		this.partLatencyMs = partLatencyMs;
+		this.failureRate = failureRate;
+		this.directory = Files.createTempDirectory("in-process-s3-");
+		this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		server.createContext("/", this::handle);
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	String endpoint() {
+		return "http://localhost:" + server.getAddress().getPort();
+	}
+
+	/**
+	 * Size of a completed object, or {@code null} if there is none under {@code key}.
+	 */
+	Long objectSize(String key) throws IOException {
+		Path object = objects.get(key);
+		return object != null ? Files.size(object) : null;
+	}
+
+	/**
+	 * Reads the completed object under {@code key}.
+	 */
+	InputStream openObject(String key) throws IOException {
+		Path object = objects.get(key);
+		if (object == null) {
+			throw new IOException("No object " + key);
+		}
+		return Files.newInputStream(object);
+	}
+
+	int injectedFailures() {
+		return injectedFailures.get();
+	}
+
+	/**
+	 * Part upload latencies recorded since the last call, in milliseconds, sorted.
+	 */
+	List<Double> drainPartLatenciesMs() {
+		List<Double> latencies = new ArrayList<>();
+		Long nanos;
+		while ((nanos = partLatenciesNanos.poll()) != null) {
+			latencies.add(nanos / 1_000_000.0);
+		}
+		latencies.sort(null);
+		return latencies;
+	}
+
+	@Override
+	public void close() throws IOException {
+		server.stop(0);
+		executor.shutdownNow();
+		try (var files = Files.walk(directory)) {
+			for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+				Files.deleteIfExists(file);
+			}
+		}
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try (exchange) {
+			String method = exchange.getRequestMethod();
+			Map<String, String> query = query(exchange.getRequestURI().getRawQuery());
+			String path = exchange.getRequestURI().getPath().substring(1);
+			int slash = path.indexOf('/');
+			String key = slash < 0 ? "" : path.substring(slash + 1);
+
+			if (key.isEmpty()) {
+				// HeadBucket, CreateBucket, PutBucketCors: the bucket always exists
+				drain(exchange);
+				respond(exchange, 200, null);
+			} else if (method.equals("POST") && query.containsKey("uploads")) {
+				drain(exchange);
+				String uploadId = UUID.randomUUID().toString();
+				uploads.put(uploadId, new Upload());
+				respond(exchange, 200, "<InitiateMultipartUploadResult xmlns=\"" + XMLNS + "\"><Bucket>"
+						+ path.substring(0, slash) + "</Bucket><Key>" + key + "</Key><UploadId>" + uploadId
+						+ "</UploadId></InitiateMultipartUploadResult>");
+			} else if (method.equals("PUT") && query.containsKey("partNumber")) {
+				uploadPart(exchange, query.get("uploadId"), Integer.parseInt(query.get("partNumber")));
+			} else if (method.equals("POST") && query.containsKey("uploadId")) {
+				completeUpload(exchange, query.get("uploadId"), key);
+			} else if (method.equals("GET") && query.containsKey("uploadId")) {
+				listParts(exchange, query.get("uploadId"), key);
+			} else if (method.equals("DELETE") && query.containsKey("uploadId")) {
+				Upload upload = uploads.remove(query.get("uploadId"));
+				if (upload == null) {
+					error(exchange, 404, "NoSuchUpload");
+				} else {
+					upload.delete();
+					respond(exchange, 204, null);
+				}
+			} else if (method.equals("PUT")) {
+				Path file = Files.createTempFile(directory, "object-", "");
+				Body body;
+				try (OutputStream out = Files.newOutputStream(file)) {
+					body = readBody(exchange, out);
+				}
+				replaceObject(key, file);
+				exchange.getResponseHeaders().set("ETag", "\"" + body.md5 + "\"");
+				respond(exchange, 200, null);
+			} else {
+				drain(exchange);
+				error(exchange, 501, "NotImplemented");
+			}
+		} catch (RuntimeException e) {
+			error(exchange, 500, "InternalError");
+		}
+	}
+
+	private void uploadPart(HttpExchange exchange, String uploadId, int partNumber) throws IOException {
+		long started = System.nanoTime();
+		Path file = Files.createTempFile(directory, "part-", "");
+		Body body;
+		try (OutputStream out = Files.newOutputStream(file)) {
+			body = readBody(exchange, out);
+		}
+		Upload upload = uploads.get(uploadId);
+		if (upload == null) {
+			Files.delete(file);
+			error(exchange, 404, "NoSuchUpload");
+			return;
+		}
+		sleep(partLatencyMs + (partLatencyMs > 0 ? ThreadLocalRandom.current().nextLong(partLatencyMs + 1) : 0));
+		if (ThreadLocalRandom.current().nextDouble() < failureRate) {
+			Files.delete(file);
+			injectedFailures.incrementAndGet();
+			error(exchange, 500, "InternalError");
+			return;
+		}
+		Part replaced = upload.parts.put(partNumber, new Part(body.size, body.md5, file));
+		if (replaced != null) {
+			Files.deleteIfExists(replaced.file);
+		}
+		exchange.getResponseHeaders().set("ETag", "\"" + body.md5 + "\"");
+		respond(exchange, 200, null);
+		partLatenciesNanos.add(System.nanoTime() - started);
+	}
+
+	/**
+	 * Assembles the parts listed in the request, in order, as S3 does: a listed part that
+	 * was never uploaded or whose ETag differs fails with {@code InvalidPart}, and parts
+	 * that are not listed are left out of the object.
+	 */
+	private void completeUpload(HttpExchange exchange, String uploadId, String key) throws IOException {
+		ByteArrayOutputStream request = new ByteArrayOutputStream();
+		readBody(exchange, request);
+		Upload upload = uploads.get(uploadId);
+		if (upload == null) {
+			error(exchange, 404, "NoSuchUpload");
+			return;
+		}
+		List<Part> listed = new ArrayList<>();
+		Matcher matcher = COMPLETED_PART.matcher(request.toString(StandardCharsets.UTF_8));
+		while (matcher.find()) {
+			String etag = matcher.group(1) != null ? matcher.group(1) : matcher.group(4);
+			int partNumber = Integer.parseInt(matcher.group(2) != null ? matcher.group(2) : matcher.group(3));
+			Part part = upload.parts.get(partNumber);
+			if (part == null || !etag.replace("&quot;", "").replace("\"", "").equals(part.md5)) {
+				error(exchange, 400, "InvalidPart");
+				return;
+			}
+			listed.add(part);
+		}
+		uploads.remove(uploadId);
+
+		Path file = Files.createTempFile(directory, "object-", "");
+		try (OutputStream out = Files.newOutputStream(file, StandardOpenOption.APPEND)) {
+			for (Part part : listed) {
+				Files.copy(part.file, out);
+			}
+		}
+		upload.delete();
+		replaceObject(key, file);
+		respond(exchange, 200, "<CompleteMultipartUploadResult xmlns=\"" + XMLNS + "\"><Key>" + key
+				+ "</Key><ETag>\"" + UUID.randomUUID() + "-" + listed.size()
+				+ "\"</ETag></CompleteMultipartUploadResult>");
+	}
+
+	private void replaceObject(String key, Path file) throws IOException {
+		Path previous = objects.put(key, file);
+		if (previous != null) {
+			Files.deleteIfExists(previous);
+		}
+	}
+
+	private void listParts(HttpExchange exchange, String uploadId, String key) throws IOException {
+		Upload upload = uploads.get(uploadId);
+		if (upload == null) {
+			error(exchange, 404, "NoSuchUpload");
+			return;
+		}
+		StringBuilder xml = new StringBuilder("<ListPartsResult xmlns=\"" + XMLNS + "\"><Key>")
+				.append(key).append("</Key><UploadId>").append(uploadId).append("</UploadId><IsTruncated>false</IsTruncated>");
+		upload.parts.entrySet().stream().sorted(Map.Entry.comparingByKey()).forEach(e -> xml
+				.append("<Part><PartNumber>").append(e.getKey()).append("</PartNumber><ETag>\"")
+				.append(e.getValue().md5).append("\"</ETag><Size>").append(e.getValue().size).append("</Size></Part>"));
+		respond(exchange, 200, xml.append("</ListPartsResult>").toString());
+	}
+
+	/**
+	 * Copies the request body to {@code out} and hashes it, undoing {@code aws-chunked}
+	 * framing when the SDK streams a signed payload.
+	 */
+	private static Body readBody(HttpExchange exchange, OutputStream out) throws IOException {
+		MessageDigest md5 = md5();
+		long size = 0;
+		String contentSha = exchange.getRequestHeaders().getFirst("x-amz-content-sha256");
+		InputStream in = exchange.getRequestBody();
+		byte[] buffer = new byte[64 * 1024];
+		if (contentSha != null && contentSha.startsWith("STREAMING-")) {
+			while (true) {
+				String header = readLine(in);
+				int semicolon = header.indexOf(';');
+				long chunk = Long.parseLong(semicolon < 0 ? header.trim() : header.substring(0, semicolon), 16);
+				if (chunk == 0) {
+					break;
+				}
+				long remaining = chunk;
+				while (remaining > 0) {
+					int n = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+					if (n < 0) {
+						throw new IOException("Truncated aws-chunked body");
+					}
+					md5.update(buffer, 0, n);
+					out.write(buffer, 0, n);
+					remaining -= n;
+				}
+				size += chunk;
+				readLine(in);
+			}
+			in.transferTo(OutputStream.nullOutputStream());
+		} else {
+			int n;
+			while ((n = in.read(buffer)) > 0) {
+				md5.update(buffer, 0, n);
+				out.write(buffer, 0, n);
+				size += n;
+			}
+		}
+		return new Body(size, HexFormat.of().formatHex(md5.digest()));
+	}
+
+	private static String readLine(InputStream in) throws IOException {
+		ByteArrayOutputStream line = new ByteArrayOutputStream();
+		int b;
+		while ((b = in.read()) >= 0 && b != '\n') {
+			if (b != '\r') {
+				line.write(b);
+			}
+		}
+		return line.toString(StandardCharsets.US_ASCII);
+	}
+
+	private static void drain(HttpExchange exchange) throws IOException {
+		exchange.getRequestBody().transferTo(OutputStream.nullOutputStream());
+	}
+
+	private static void error(HttpExchange exchange, int status, String code) throws IOException {
+		respond(exchange, status, "<Error><Code>" + code + "</Code><Message>" + code + "</Message></Error>");
+	}
+
+	private static void respond(HttpExchange exchange, int status, String xml) throws IOException {
+		if (xml == null) {
+			exchange.sendResponseHeaders(status, -1);
+			return;
+		}
+		byte[] body = ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + xml).getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/xml");
+		exchange.sendResponseHeaders(status, body.length);
+		exchange.getResponseBody().write(body);
+	}
+
+	private static Map<String, String> query(String rawQuery) {
+		Map<String, String> params = new HashMap<>();
+		if (rawQuery == null) {
+			return params;
+		}
+		for (String param : rawQuery.split("&")) {
+			int eq = param.indexOf('=');
+			params.put(eq < 0 ? param : param.substring(0, eq),
+					eq < 0 ? "" : URLDecoder.decode(param.substring(eq + 1), StandardCharsets.UTF_8));
+		}
+		return params;
+	}
+
+	private static MessageDigest md5() {
+		try {
+			return MessageDigest.getInstance("MD5");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("MD5 not available", e);
+		}
+	}
+
+	private static void sleep(long millis) {
+		try {
+			TimeUnit.MILLISECONDS.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private record Body(long size, String md5) {}
+
+	private record Part(long size, String md5, Path file) {}
+
+	private static final class Upload {
+
+		final Map<Integer, Part> parts = new ConcurrentHashMap<>();
+
+		void delete() throws IOException {
+			for (Part part : parts.values()) {
+				Files.deleteIfExists(part.file);
+			}
+		}
+	}
+}
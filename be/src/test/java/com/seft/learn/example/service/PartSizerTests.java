@@ -0,0 +1,29 @@
+package com.seft.learn.example.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * How large a part a resumable upload may buffer between checkpoints.
+ */
+class PartSizerTests {
+
+	private static final int MB = 1024 * 1024;
+
+	@Test
+	void uncheckpointedPartsStayWithinTheirShareOfTheBudget() {
+		// 256 MB budget over 16 parts in flight
+		PartSizer sizer = new PartSizer(64 * MB, 16L * MB);
+
+		assertEquals(16L * MB, sizer.uncheckpointedPartSize(5 * MB, 4));
+		assertEquals(64L * MB, sizer.uncheckpointedPartSize(64 * MB, 4));
+	}
+
+	@Test
+	void uncheckpointedPartsGrowWithTheBudget() {
+		PartSizer sizer = new PartSizer(64 * MB, 1024L * MB);
+
+		assertEquals(20L * MB, sizer.uncheckpointedPartSize(5 * MB, 4));
+	}
+}
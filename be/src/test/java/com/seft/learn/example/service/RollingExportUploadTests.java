@@ -0,0 +1,289 @@
+package com.seft.learn.example.service;
+
+import com.seft.learn.example.service.export.ExportCheckpoint;
+import com.seft.learn.example.service.export.ExportFile;
+import com.seft.learn.example.service.export.ExportMeters;
+import com.seft.learn.example.service.export.IdRange;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Rolling, background completion and resume points of {@link RollingExportUpload}, over
+ * stub uploads whose completion each test releases (or fails) in the order it needs.
+ */
+class RollingExportUploadTests {
+
+	private static final byte[] HEADER = "\"id\"\n".getBytes(StandardCharsets.UTF_8);
+	private static final IdRange RANGE = new IdRange(1, 100);
+
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+	private final Map<String, StubFile> opened = new ConcurrentHashMap<>();
+	private final List<String> openOrder = new CopyOnWriteArrayList<>();
+	private final List<ExportFile> recorded = new CopyOnWriteArrayList<>();
+	private boolean completeImmediately = true;
+	private boolean failNextOpened;
+
+	@AfterEach
+	void shutDown() {
+		opened.values().forEach(file -> file.gate.complete(null));
+		executor.shutdownNow();
+	}
+
+	@Test
+	void rollsAtTheRowLimitWithAHeaderInEveryFile() throws IOException {
+		RollingExportUpload upload = rolling(2, List.of());
+		writeRows(upload, 1, 5);
+		upload.complete();
+
+		assertEquals(List.of("part-1", "part-2", "part-3"), openOrder);
+		assertEquals("\"id\"\n1\n2\n", opened.get("part-1").content());
+		assertEquals("\"id\"\n3\n4\n", opened.get("part-2").content());
+		assertEquals("\"id\"\n5\n", opened.get("part-3").content());
+
+		List<ExportFile> files = upload.getFiles();
+		assertEquals(List.of(
+				new ExportFile(1, "part-1", 2, 9, 9, 1L, 2L),
+				new ExportFile(2, "part-2", 2, 9, 9, 3L, 4L),
+				new ExportFile(3, "part-3", 1, 7, 7, 5L, 100L)), files);
+		assertEquals(files, sorted(recorded));
+	}
+
+	@Test
+	void dropsAnEmptyLastFile() throws IOException {
+		RollingExportUpload upload = rolling(2, List.of());
+		writeRows(upload, 1, 4);
+		long size = upload.complete();
+
+		assertTrue(opened.get("part-3").aborted, "empty last file aborted");
+		assertFalse(opened.get("part-3").completed);
+		List<ExportFile> files = upload.getFiles();
+		assertEquals(2, files.size());
+		assertEquals(Long.valueOf(4), files.get(1).maxId());
+		assertEquals(18, size);
+	}
+
+	@Test
+	void keepsTheOnlyFileOfAnEmptyExport() throws IOException {
+		RollingExportUpload upload = rolling(2, List.of());
+		upload.complete();
+
+		assertTrue(opened.get("part-1").completed);
+		assertEquals(List.of(new ExportFile(1, "part-1", 0, 5, 5, 1L, 100L)), upload.getFiles());
+	}
+
+	@Test
+	void resumesAfterTheLastConsecutiveFileCompleted() throws Exception {
+		completeImmediately = false;
+		RollingExportUpload upload = rolling(2, List.of());
+		writeRows(upload, 1, 5);
+
+		// File 2 completes before file 1
+		opened.get("part-2").gate.complete(null);
+		awaitFiles(upload, 1);
+		assertEquals(List.of(2), fileNumbers(upload.getFiles()));
+
+		opened.get("part-1").gate.complete(null);
+		ExportCheckpoint checkpoint = upload.getLastCheckpoint();
+		assertEquals(new ExportCheckpoint(2, 4, 4, 18, 18), checkpoint);
+
+		opened.get("part-3").gate.complete(null);
+		upload.complete();
+		assertEquals(List.of(1, 2, 3), fileNumbers(upload.getFiles()));
+	}
+
+	@Test
+	void failedMiddleFileEndsTheResumePointsBeforeIt() throws Exception {
+		completeImmediately = false;
+		RollingExportUpload upload = rolling(2, List.of());
+		writeRows(upload, 1, 5);
+
+		opened.get("part-2").fail = true;
+		opened.values().forEach(file -> file.gate.complete(null));
+
+		assertThrows(IOException.class, upload::complete);
+		assertEquals(List.of(1, 3), fileNumbers(upload.getFiles()));
+		assertEquals(new ExportCheckpoint(1, 2, 2, 9, 9), upload.getLastCheckpoint());
+		assertTrue(opened.get("part-2").aborted, "failed file aborted");
+	}
+
+	@Test
+	void failedFileStopsTheExportAtTheNextRoll() throws Exception {
+		failNextOpened = true;
+		RollingExportUpload upload = rolling(2, List.of());
+		writeRows(upload, 1, 2);
+		// Waits for file 1 to have failed
+		assertNull(upload.getLastCheckpoint());
+
+		writeRows(upload, 3, 3);
+		assertThrows(IOException.class, () -> writeRows(upload, 4, 4));
+		upload.abort();
+		assertTrue(opened.get("part-1").aborted);
+		assertTrue(opened.get("part-2").aborted);
+	}
+
+	@Test
+	void continuesAfterFilesOfAnEarlierAttempt() throws IOException {
+		List<ExportFile> previous = List.of(
+				new ExportFile(1, "part-1", 2, 9, 20, 1L, 2L),
+				new ExportFile(2, "part-2", 2, 9, 20, 3L, 4L));
+		RollingExportUpload upload = rolling(2, previous);
+
+		assertEquals(List.of("part-3"), openOrder);
+		assertEquals(new ExportCheckpoint(2, 4, 4, 40, 18), upload.getLastCheckpoint());
+		assertEquals(40, upload.getUncompressedBytes() - HEADER.length);
+
+		writeRows(upload, 5, 6);
+		long size = upload.complete();
+
+		List<ExportFile> files = upload.getFiles();
+		assertEquals(List.of(1, 2, 3), fileNumbers(files));
+		assertEquals(new ExportFile(3, "part-3", 2, 9, 9, 5L, 6L), files.get(2));
+		assertEquals(List.of(files.get(2)), recorded);
+		assertEquals(27, size);
+	}
+
+	@Test
+	void resumedExportWithNothingLeftDropsTheNewFile() throws IOException {
+		List<ExportFile> previous = List.of(new ExportFile(1, "part-1", 2, 9, 9, 1L, 100L));
+		RollingExportUpload upload = rolling(2, previous);
+		long size = upload.complete();
+
+		assertTrue(opened.get("part-2").aborted);
+		assertEquals(previous, upload.getFiles());
+		assertEquals(9, size);
+	}
+
+	private RollingExportUpload rolling(long maxRows, List<ExportFile> previous) {
+		return new RollingExportUpload(
+				fileNumber -> "part-" + fileNumber,
+				key -> {
+					StubFile file = new StubFile();
+					if (completeImmediately) {
+						file.gate.complete(null);
+					}
+					if (failNextOpened) {
+						file.fail = true;
+						failNextOpened = false;
+					}
+					opened.put(key, file);
+					openOrder.add(key);
+					return file;
+				},
+				recorded::add, executor, HEADER, maxRows, 0, previous, RANGE);
+	}
+
+	// One row per id, as "<id>\n", with the running row count of the export
+	private static void writeRows(RollingExportUpload upload, long fromId, long toId) throws IOException {
+		for (long id = fromId; id <= toId; id++) {
+			byte[] row = (id + "\n").getBytes(StandardCharsets.UTF_8);
+			upload.write(row, 0, row.length);
+			upload.checkpoint(id, id);
+		}
+	}
+
+	private static void awaitFiles(RollingExportUpload upload, int files) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (upload.getFiles().size() < files) {
+			assertTrue(System.nanoTime() < deadline, "files not completed in time");
+			Thread.sleep(5);
+		}
+	}
+
+	private static List<Integer> fileNumbers(List<ExportFile> files) {
+		return files.stream().map(ExportFile::fileNumber).toList();
+	}
+
+	private static List<ExportFile> sorted(List<ExportFile> files) {
+		List<ExportFile> sorted = new ArrayList<>(files);
+		sorted.sort((a, b) -> Integer.compare(a.fileNumber(), b.fileNumber()));
+		return sorted;
+	}
+
+	/**
+	 * In-memory file whose {@link #complete()} waits for {@link #gate}, then succeeds or,
+	 * with {@link #fail} set, throws.
+	 */
+	private static final class StubFile implements ExportUpload {
+
+		final CompletableFuture<Void> gate = new CompletableFuture<>();
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		volatile boolean fail;
+		volatile boolean completed;
+		volatile boolean aborted;
+
+		String content() {
+			return bytes.toString(StandardCharsets.UTF_8);
+		}
+
+		@Override
+		public synchronized void write(byte[] data, int offset, int length) {
+			bytes.write(data, offset, length);
+		}
+
+		@Override
+		public void expectRows(long rows) {
+		}
+
+		@Override
+		public void instrument(ExportMeters.Stages stages) {
+		}
+
+		@Override
+		public ExportCheckpoint getLastCheckpoint() {
+			return null;
+		}
+
+		@Override
+		public long complete() throws IOException {
+			gate.join();
+			if (fail) {
+				throw new IOException("Injected completion failure");
+			}
+			completed = true;
+			return bytes.size();
+		}
+
+		@Override
+		public synchronized long getUncompressedBytes() {
+			return bytes.size();
+		}
+
+		@Override
+		public synchronized long getCompressedBytes() {
+			return bytes.size();
+		}
+
+		@Override
+		public void release() {
+		}
+
+		@Override
+		public void abort() {
+			aborted = true;
+		}
+
+		@Override
+		public String describeOccupancy() {
+			return "";
+		}
+	}
+}
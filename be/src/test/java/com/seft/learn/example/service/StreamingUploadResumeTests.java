@@ -0,0 +1,246 @@
+package com.seft.learn.example.service;
+
+import com.seft.learn.example.entity.ExportJob.Compression;
+import com.seft.learn.example.service.export.ExportCheckpoint;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.NoSuchUploadException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Kills a resumable {@link S3StreamingUploader.StreamingUpload} after a checkpoint,
+ * resumes it the way {@code ExportService} does from the parts and checkpoint it
+ * recorded, and reads the completed object back from an {@link InProcessS3Server}: every
+ * row must be there exactly once, in order.
+ */
+class StreamingUploadResumeTests {
+
+	private static final String KEY = "exports/resume.csv";
+	private static final int PAYLOAD_BYTES = 200;
+	// Rows of about 200 bytes, which gzip to about half: 20 MB before the first awaited
+	// checkpoint and 10 MB more before the kill, so even gzipped there are parts on both sides
+	private static final long ROWS_BEFORE_CHECKPOINT = 100_000;
+	private static final long ROWS_BEFORE_KILL = 150_000;
+	private static final long ROWS = 250_000;
+	private static final long TIMEOUT_MS = 60_000;
+
+	private final ExecutorService uploadExecutor = Executors.newFixedThreadPool(8);
+	private final ExecutorService compressionExecutor = Executors.newFixedThreadPool(4);
+	private final InProcessS3Server s3;
+	private final S3Client s3Client;
+	private final PartUploadScheduler scheduler = new PartUploadScheduler(8, 4, new SimpleMeterRegistry());
+	private final S3StreamingUploader uploader;
+
+	StreamingUploadResumeTests() throws IOException {
+		// Part latency with jitter, so parts finish out of order
+		s3 = new InProcessS3Server(20, 0);
+		s3Client = S3Client.builder()
+				.endpointOverride(URI.create(s3.endpoint()))
+				.region(Region.AP_SOUTHEAST_1)
+				.credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("test", "test")))
+				.forcePathStyle(true)
+				.build();
+		uploader = new S3StreamingUploader(new SyncMultipartUploadBackend(s3Client, uploadExecutor), null,
+				new PartBufferPool(64, 1024), scheduler, compressionExecutor);
+		ReflectionTestUtils.setField(uploader, "bucketName", "exports");
+	}
+
+	@AfterEach
+	void shutDown() throws IOException {
+		s3Client.close();
+		s3.close();
+		uploadExecutor.shutdownNow();
+		compressionExecutor.shutdownNow();
+	}
+
+	@Test
+	void resumesUncompressedUploadAfterCheckpoint() throws Exception {
+		assertResumesWithoutLosingOrRepeatingRows(Compression.NONE);
+	}
+
+	@Test
+	void resumesGzipUploadAfterCheckpoint() throws Exception {
+		assertResumesWithoutLosingOrRepeatingRows(Compression.GZIP);
+	}
+
+	@Test
+	void refusesToResumeAnAbortedUpload() {
+		S3StreamingUploader.StreamingUpload upload = uploader.startUpload(
+				KEY, S3StreamingUploader.CSV_CONTENT_TYPE, Compression.NONE, (parts, checkpoint) -> {});
+		upload.abort();
+
+		assertThrows(NoSuchUploadException.class, () -> uploader.resumeUpload(KEY, upload.getUploadId(), Compression.NONE,
+				List.of(), new ExportCheckpoint(1, 1, 1, 1, 1), (parts, checkpoint) -> {}));
+	}
+
+	@Test
+	void abortsAnUploadLeftBehindOnce() {
+		S3StreamingUploader.StreamingUpload upload = uploader.startUpload(
+				KEY, S3StreamingUploader.CSV_CONTENT_TYPE, Compression.NONE, (parts, checkpoint) -> {});
+		upload.release();
+
+		uploader.abortUpload(KEY, upload.getUploadId());
+		// Already gone, as when the abort of a previous attempt got through
+		uploader.abortUpload(KEY, upload.getUploadId());
+
+		assertThrows(NoSuchUploadException.class, () -> uploader.resumeUpload(KEY, upload.getUploadId(), Compression.NONE,
+				List.of(), new ExportCheckpoint(1, 1, 1, 1, 1), (parts, checkpoint) -> {}));
+	}
+
+	private void assertResumesWithoutLosingOrRepeatingRows(Compression compression) throws Exception {
+		RecordingListener first = new RecordingListener();
+		S3StreamingUploader.StreamingUpload upload = uploader.startUpload(
+				KEY, S3StreamingUploader.CSV_CONTENT_TYPE, compression, first);
+		writeRows(upload, 1, ROWS_BEFORE_CHECKPOINT);
+		first.awaitCheckpoint();
+
+		// Parts after the recorded checkpoint are uploaded by the dying attempt and must
+		// be replaced or left out by the resumed one
+		writeRows(upload, ROWS_BEFORE_CHECKPOINT + 1, ROWS_BEFORE_KILL);
+		RecordingListener.Recorded recorded = first.kill();
+		upload.release();
+		awaitNoPartsInFlight();
+
+		first.assertReportedInPartOrder(null);
+		ExportCheckpoint checkpoint = recorded.checkpoint();
+		assertTrue(checkpoint.lastId() < ROWS_BEFORE_KILL, "checkpoint before the kill");
+		assertEquals(checkpoint.lastId(), checkpoint.rows());
+
+		RecordingListener second = new RecordingListener();
+		S3StreamingUploader.StreamingUpload resumed = uploader.resumeUpload(
+				KEY, upload.getUploadId(), compression, recorded.parts(), checkpoint, second);
+		assertEquals(checkpoint, resumed.getLastCheckpoint());
+		writeRows(resumed, checkpoint.lastId() + 1, ROWS);
+		long size = resumed.complete();
+
+		second.assertReportedInPartOrder(checkpoint);
+		assertEquals(s3.objectSize(KEY), size);
+		assertRows(compression);
+	}
+
+	private static void writeRows(S3StreamingUploader.StreamingUpload upload, long fromId, long toId) throws IOException {
+		for (long id = fromId; id <= toId; id++) {
+			byte[] row = row(id).getBytes(StandardCharsets.UTF_8);
+			upload.write(row, 0, row.length);
+			upload.checkpoint(id, id);
+		}
+	}
+
+	// Random hex per id: compresses about as well as real rows and can be checked on read
+	private static String row(long id) {
+		byte[] payload = new byte[PAYLOAD_BYTES / 2];
+		new Random(id).nextBytes(payload);
+		return id + "," + HexFormat.of().formatHex(payload) + "\n";
+	}
+
+	private void assertRows(Compression compression) throws IOException {
+		try (InputStream object = s3.openObject(KEY);
+			 InputStream in = compression == Compression.GZIP ? new GZIPInputStream(object, 1 << 16) : object;
+			 BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+			long expectedId = 1;
+			String line;
+			while ((line = reader.readLine()) != null) {
+				assertEquals(row(expectedId), line + "\n", "row " + expectedId);
+				expectedId++;
+			}
+			assertEquals(ROWS + 1, expectedId, "rows in the object");
+		}
+	}
+
+	private void awaitNoPartsInFlight() throws InterruptedException {
+		long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+		while (scheduler.inFlight() > 0) {
+			assertTrue(System.currentTimeMillis() < deadline, "parts still in flight");
+			Thread.sleep(10);
+		}
+	}
+
+	/**
+	 * Records checkpoints the way the checkpoint store does, until {@link #kill()}: what
+	 * it recorded by then is all a new attempt gets to resume from.
+	 */
+	private static final class RecordingListener implements S3StreamingUploader.CheckpointListener {
+
+		private final List<CompletedPart> parts = new ArrayList<>();
+		private final List<List<CompletedPart>> reportedParts = new ArrayList<>();
+		private final List<ExportCheckpoint> reported = new ArrayList<>();
+		private ExportCheckpoint checkpoint;
+		private boolean killed;
+
+		record Recorded(List<CompletedPart> parts, ExportCheckpoint checkpoint) {}
+
+		@Override
+		public synchronized void onCheckpoint(List<CompletedPart> newParts, ExportCheckpoint reached) {
+			reportedParts.add(newParts);
+			reported.add(reached);
+			if (!killed) {
+				parts.addAll(newParts);
+				checkpoint = reached;
+				notifyAll();
+			}
+		}
+
+		synchronized void awaitCheckpoint() throws InterruptedException {
+			long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+			while (checkpoint == null) {
+				long remaining = deadline - System.currentTimeMillis();
+				assertTrue(remaining > 0, "no checkpoint reached");
+				wait(remaining);
+			}
+		}
+
+		synchronized Recorded kill() {
+			killed = true;
+			assertNotNull(checkpoint);
+			return new Recorded(List.copyOf(parts), checkpoint);
+		}
+
+		/**
+		 * Every report carries the parts after the previous checkpoint, up to and
+		 * including the part of its own checkpoint, and row positions only advance.
+		 */
+		synchronized void assertReportedInPartOrder(ExportCheckpoint resumedFrom) {
+			assertFalse(reported.isEmpty(), "no checkpoints reported");
+			int lastPart = resumedFrom != null ? resumedFrom.partNumber() : 0;
+			long lastId = resumedFrom != null ? resumedFrom.lastId() : 0;
+			for (int i = 0; i < reported.size(); i++) {
+				ExportCheckpoint reached = reported.get(i);
+				List<Integer> partNumbers = reportedParts.get(i).stream().map(CompletedPart::partNumber).toList();
+				List<Integer> expected = new ArrayList<>();
+				for (int part = lastPart + 1; part <= reached.partNumber(); part++) {
+					expected.add(part);
+				}
+				assertEquals(expected, partNumbers, "parts of checkpoint " + reached);
+				assertTrue(reached.lastId() > lastId, "row position advances at " + reached);
+				lastPart = reached.partNumber();
+				lastId = reached.lastId();
+			}
+		}
+	}
+}
@@ -0,0 +1,136 @@
+package com.seft.learn.example.service.compression;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Round-trips {@link ParallelGzipOutputStream} output through {@link GZIPInputStream},
+ * which reads concatenated members as one stream the way {@code gunzip} does.
+ */
+class ParallelGzipOutputStreamTests {
+
+	private static final int BLOCK_SIZE = 1024;
+
+	private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+	@AfterEach
+	void shutDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	void emptyInputIsAValidGzipFile() throws IOException {
+		byte[] gzip = gzip(new byte[0], 4, BLOCK_SIZE);
+
+		assertArrayEquals(new byte[0], gunzip(gzip));
+	}
+
+	@Test
+	void inputOfExactlyOneBlock() throws IOException {
+		assertRoundTrip(csv(BLOCK_SIZE), 4, BLOCK_SIZE);
+	}
+
+	@Test
+	void inputOneByteOverABlock() throws IOException {
+		assertRoundTrip(csv(BLOCK_SIZE + 1), 4, BLOCK_SIZE);
+	}
+
+	@Test
+	void singleByteWrites() throws IOException {
+		byte[] data = csv(3 * BLOCK_SIZE + 17);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (ParallelGzipOutputStream gzip = new ParallelGzipOutputStream(out, executor, BLOCK_SIZE, 4)) {
+			for (byte b : data) {
+				gzip.write(b);
+			}
+		}
+
+		assertArrayEquals(data, gunzip(out.toByteArray()));
+	}
+
+	@Test
+	void windowSmallerThanTheNumberOfBlocks() throws IOException {
+		assertRoundTrip(csv(40 * BLOCK_SIZE + 123), 2, 700);
+		assertRoundTrip(csv(40 * BLOCK_SIZE + 123), 1, 700);
+	}
+
+	@Test
+	void flushMidStreamKeepsOrder() throws IOException {
+		byte[] data = csv(5 * BLOCK_SIZE + 300);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (ParallelGzipOutputStream gzip = new ParallelGzipOutputStream(out, executor, BLOCK_SIZE, 2)) {
+			gzip.write(data, 0, 100);
+			gzip.flush();
+			gzip.write(data, 100, 2 * BLOCK_SIZE);
+			gzip.flush();
+			gzip.write(data, 100 + 2 * BLOCK_SIZE, data.length - 100 - 2 * BLOCK_SIZE);
+		}
+
+		assertArrayEquals(data, gunzip(out.toByteArray()));
+	}
+
+	@Test
+	void incompressibleInput() throws IOException {
+		assertRoundTrip(random(10 * BLOCK_SIZE + 5), 3, 4096);
+	}
+
+	@Test
+	void growsTheMemberBufferWhenOutputDoesNotFit() throws IOException {
+		byte[] data = random(5000);
+		// Header, trailer and a single byte of deflate output to start with
+		ParallelGzipOutputStream.Member member = ParallelGzipOutputStream.compress(data, data.length, 10 + 8 + 1);
+
+		assertArrayEquals(data, gunzip(Arrays.copyOf(member.bytes(), member.length())));
+
+		byte[] empty = new byte[0];
+		member = ParallelGzipOutputStream.compress(empty, 0, 10 + 8);
+		assertEquals(0, gunzip(Arrays.copyOf(member.bytes(), member.length())).length);
+	}
+
+	private void assertRoundTrip(byte[] data, int maxInFlight, int writeSize) throws IOException {
+		assertArrayEquals(data, gunzip(gzip(data, maxInFlight, writeSize)));
+	}
+
+	private byte[] gzip(byte[] data, int maxInFlight, int writeSize) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (ParallelGzipOutputStream gzip = new ParallelGzipOutputStream(out, executor, BLOCK_SIZE, maxInFlight)) {
+			for (int offset = 0; offset < data.length; offset += writeSize) {
+				gzip.write(data, offset, Math.min(writeSize, data.length - offset));
+			}
+		}
+		return out.toByteArray();
+	}
+
+	private static byte[] gunzip(byte[] gzip) throws IOException {
+		try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzip))) {
+			return in.readAllBytes();
+		}
+	}
+
+	private static byte[] csv(int length) {
+		StringBuilder csv = new StringBuilder();
+		for (int i = 0; csv.length() < length; i++) {
+			csv.append("\"").append(i).append("\",\"user").append(i).append("@example.com\",\"User ").append(i).append("\"\n");
+		}
+		return Arrays.copyOf(csv.toString().getBytes(StandardCharsets.UTF_8), length);
+	}
+
+	private static byte[] random(int length) {
+		byte[] data = new byte[length];
+		new Random(42).nextBytes(data);
+		return data;
+	}
+}
@@ -0,0 +1,136 @@
+package com.seft.learn.example.service.export;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks {@link CsvRowEncoder} against the String-based formatting it replaced (the
+ * {@code CsvFormatter} baseline of the JMH benchmarks): each field quoted with quotes
+ * doubled, {@code NULL} as {@code ""}, encoded with {@link String#getBytes}.
+ */
+class CsvRowEncoderTests {
+
+	// id, email, name, created_at
+	private static final String[][] ROWS = {
+			{"1", "plain@example.com", "Plain Name", "2024-01-01 00:00:00"},
+			{"2", "\"quoted\"@example.com", "Smith, John \"Johnny\"", "2024-01-01 00:00:01"},
+			{"3", "line@example.com", "first line\nsecond line\r\nthird", "2024-01-01 00:00:02"},
+			{"4", null, null, null},
+			{"5", "café@ví-dụ.vn", "Müller-Lüdenscheidt", "é ß ñ"},
+			{"6", "山田@例え.jp", "Nguyễn Văn Ánh €", "山田 太郎 €"},
+			{"7", "emoji😀@example.com", "𝄞 music 𐐷", "😀 𝄞 𐐷"},
+			{"8", "lone\uD83D@example.com", "low\uDE00first", "high\uD83D, low\uDE00, reversed\uDE00\uD83D, end\uD83D"},
+			{"0", "", "", ""},
+			{"-42", "\",\"", "\"\"", "\""},
+			{Long.toString(Long.MAX_VALUE), "a", "b", "c"},
+			{Long.toString(Long.MIN_VALUE), "a", "b", "c"},
+	};
+
+	@Test
+	void encodesAllColumnsLikeStringFormatting() throws SQLException {
+		assertEncodesLikeStringFormatting(UserQuery.ALL, 64 * 1024);
+	}
+
+	@Test
+	void encodesProjectedColumnsInRequestedOrder() throws SQLException {
+		assertEncodesLikeStringFormatting(
+				new UserQuery(List.of(UserColumn.NAME, UserColumn.ID, UserColumn.CREATED_AT), null, null), 64 * 1024);
+		assertEncodesLikeStringFormatting(
+				new UserQuery(List.of(UserColumn.CREATED_AT, UserColumn.EMAIL), null, null), 64 * 1024);
+	}
+
+	@Test
+	void growsBufferSmallerThanARow() throws SQLException {
+		assertEncodesLikeStringFormatting(UserQuery.ALL, 8);
+	}
+
+	@Test
+	void encodesHeader() throws Exception {
+		UserQuery query = new UserQuery(List.of(UserColumn.EMAIL, UserColumn.ID), null, null);
+		CsvRowEncoder encoder = new CsvRowEncoder(query);
+		encoder.encodeHeader();
+
+		assertEquals("\"email\",\"id\"\n", new String(drain(encoder), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	void tracksLastIdWhenIdIsNotExported() throws SQLException {
+		UserQuery query = new UserQuery(List.of(UserColumn.NAME), null, null);
+		CsvRowEncoder encoder = new CsvRowEncoder(query);
+		encoder.encodeRow(resultSet(query, ROWS[6]));
+
+		assertEquals(7, encoder.lastId());
+	}
+
+	private static void assertEncodesLikeStringFormatting(UserQuery query, int capacity) throws SQLException {
+		CsvRowEncoder encoder = new CsvRowEncoder(query, capacity);
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		for (String[] row : ROWS) {
+			encoder.encodeRow(resultSet(query, row));
+			expected.writeBytes(format(query, row));
+		}
+		assertArrayEquals(expected.toByteArray(), drain(encoder));
+	}
+
+	/**
+	 * The String-based formatting: {@code CsvFormatter.formatRow} plus the line break,
+	 * restricted to the query's columns.
+	 */
+	private static byte[] format(UserQuery query, String[] row) {
+		List<String> fields = new ArrayList<>();
+		for (UserColumn column : query.columns()) {
+			String value = row[column.ordinal()];
+			fields.add("\"" + (value == null ? "" : value.replace("\"", "\"\"")) + "\"");
+		}
+		return (String.join(",", fields) + "\n").getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static byte[] drain(CsvRowEncoder encoder) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try {
+			encoder.drainTo(out::write);
+		} catch (Exception e) {
+			throw new AssertionError(e);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * One row as {@link UserQuery#cursorSelectList()} selects it, returning varchar columns
+	 * from {@code getBytes} as the PostgreSQL driver does: the UTF-8 bytes of the value.
+	 */
+	private static ResultSet resultSet(UserQuery query, String[] row) {
+		List<UserColumn> selected = new ArrayList<>();
+		selected.add(UserColumn.ID);
+		query.columns().stream().filter(column -> column != UserColumn.ID).forEach(selected::add);
+		boolean[] lastNull = {false};
+
+		return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+				new Class<?>[]{ResultSet.class}, (proxy, method, args) -> {
+					String value = method.getName().equals("wasNull")
+							? null
+							: row[selected.get((int) args[0] - 1).ordinal()];
+					return switch (method.getName()) {
+						case "getLong" -> {
+							lastNull[0] = value == null;
+							yield value == null ? 0L : Long.parseLong(value);
+						}
+						case "getBytes" -> value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+						case "getString" -> value;
+						case "wasNull" -> lastNull[0];
+						default -> throw new UnsupportedOperationException(method.getName() + Arrays.toString(args));
+					};
+				});
+	}
+}
@@ -0,0 +1,209 @@
+package com.seft.learn.example.service.export;
+
+import com.seft.learn.example.entity.ExportJob;
+import com.seft.learn.example.entity.ExportJobFile;
+import com.seft.learn.example.entity.ExportJobPart;
+import com.seft.learn.example.repository.ExportJobFileRepository;
+import com.seft.learn.example.repository.ExportJobPartRepository;
+import com.seft.learn.example.repository.ExportJobRepository;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Which finished files of a split export {@link ExportCheckpointStore} hands a retried
+ * job, over an in-memory {@code export_job_files}, and that writes of a node that lost
+ * the job's lease are dropped. {@code export_jobs} holds a single row, owned by
+ * {@link #OWNER}.
+ */
+class ExportCheckpointStoreTests {
+
+	private static final UUID JOB_ID = UUID.randomUUID();
+	private static final UUID OTHER_JOB_ID = UUID.randomUUID();
+	private static final String OWNER = "node-a";
+	private static final String LOST_OWNER = "node-b";
+
+	private final ExportJob jobRow = new ExportJob();
+	private final List<ExportJobPart> partRows = new ArrayList<>();
+	private final List<ExportJobFile> fileRows = new ArrayList<>();
+	private final ExportCheckpointStore store = new ExportCheckpointStore(
+			jobRepository(), partRepository(), fileRepository());
+
+	@Test
+	void keepsConsecutiveFiles() {
+		saveFiles(JOB_ID, 1, 2, 3);
+
+		assertEquals(List.of(1, 2, 3), fileNumbers(store.finishedFiles(JOB_ID)));
+		assertEquals(List.of(1, 2, 3), fileNumbers(store.files(JOB_ID)));
+	}
+
+	@Test
+	void dropsFilesRecordedAfterAGap() {
+		// File 3 failed while file 4 completed
+		saveFiles(JOB_ID, 4, 1, 2);
+
+		assertEquals(List.of(1, 2), fileNumbers(store.finishedFiles(JOB_ID)));
+		assertEquals(List.of(1, 2), fileNumbers(store.files(JOB_ID)));
+	}
+
+	@Test
+	void startsOverWithoutTheFirstFile() {
+		saveFiles(JOB_ID, 2, 3);
+
+		assertEquals(List.of(), store.finishedFiles(JOB_ID));
+		assertEquals(List.of(), store.files(JOB_ID));
+	}
+
+	@Test
+	void leavesOtherJobsAlone() {
+		saveFiles(JOB_ID, 1, 3);
+		saveFiles(OTHER_JOB_ID, 1, 2, 3);
+
+		assertEquals(List.of(1), fileNumbers(store.finishedFiles(JOB_ID)));
+		assertEquals(List.of(1, 2, 3), fileNumbers(store.files(OTHER_JOB_ID)));
+	}
+
+	@Test
+	void keepsEveryFieldOfAFile() {
+		ExportFile file = new ExportFile(1, "exports/job/part-00001.csv.gz", 500, 1_234, 9_876, 1L, 500L);
+		store.saveFile(JOB_ID, OWNER, file);
+
+		assertEquals(List.of(file), store.finishedFiles(JOB_ID));
+	}
+
+	@Test
+	void dropsFileOfALostLease() {
+		assertFalse(store.saveFile(JOB_ID, LOST_OWNER, new ExportFile(1, "part-1", 100, 10, 20, 1L, 100L)));
+
+		assertEquals(List.of(), store.files(JOB_ID));
+	}
+
+	@Test
+	void savesCheckpointAndItsParts() {
+		assertTrue(store.save(JOB_ID, OWNER, parts(1, 2), new ExportCheckpoint(2, 200, 200, 2_000, 1_000)));
+
+		assertEquals(2, jobRow.getCheckpointPartNumber());
+		assertEquals(200L, jobRow.getCheckpointLastId());
+		assertEquals(List.of(1, 2), partRows.stream().map(ExportJobPart::getPartNumber).toList());
+	}
+
+	@Test
+	void dropsCheckpointOfALostLease() {
+		store.save(JOB_ID, OWNER, parts(1), new ExportCheckpoint(1, 100, 100, 1_000, 500));
+
+		assertFalse(store.save(JOB_ID, LOST_OWNER, parts(2), new ExportCheckpoint(2, 200, 200, 2_000, 1_000)));
+		assertEquals(1, jobRow.getCheckpointPartNumber());
+		assertEquals(List.of(1), partRows.stream().map(ExportJobPart::getPartNumber).toList());
+
+		store.clear(JOB_ID, LOST_OWNER);
+		assertEquals(1, jobRow.getCheckpointPartNumber());
+		assertEquals(1, partRows.size());
+		assertFalse(store.startUpload(JOB_ID, LOST_OWNER, "upload-b"));
+		assertEquals(1, partRows.size());
+
+		store.clear(JOB_ID, OWNER);
+		assertNull(jobRow.getCheckpointPartNumber());
+		assertEquals(List.of(), partRows);
+	}
+
+	private static List<CompletedPart> parts(int... partNumbers) {
+		List<CompletedPart> parts = new ArrayList<>();
+		for (int partNumber : partNumbers) {
+			parts.add(CompletedPart.builder().partNumber(partNumber).eTag("etag-" + partNumber).build());
+		}
+		return parts;
+	}
+
+	private void saveFiles(UUID jobId, int... fileNumbers) {
+		for (int fileNumber : fileNumbers) {
+			long minId = (fileNumber - 1) * 100L + 1;
+			store.saveFile(jobId, OWNER, new ExportFile(fileNumber, "part-" + fileNumber, 100, 10, 20, minId, minId + 99));
+		}
+	}
+
+	private static List<Integer> fileNumbers(List<ExportFile> files) {
+		return files.stream().map(ExportFile::fileNumber).toList();
+	}
+
+	/**
+	 * The {@link ExportJobFileRepository} methods the store calls, over {@link #fileRows}.
+	 */
+	private ExportJobFileRepository fileRepository() {
+		return (ExportJobFileRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[]{ExportJobFileRepository.class}, (proxy, method, args) -> switch (method.getName()) {
+					case "save" -> {
+						fileRows.add((ExportJobFile) args[0]);
+						yield args[0];
+					}
+					case "findByJobIdOrderByFileNumber" -> fileRows.stream()
+							.filter(file -> file.getJobId().equals(args[0]))
+							.sorted(Comparator.comparing(ExportJobFile::getFileNumber))
+							.toList();
+					case "deleteByJobIdAndFileNumberAfter" -> {
+						fileRows.removeIf(file -> file.getJobId().equals(args[0]) && file.getFileNumber() > (Integer) args[1]);
+						yield null;
+					}
+					default -> throw new UnsupportedOperationException(method.getName());
+				});
+	}
+
+	/**
+	 * The {@link ExportJobRepository} methods the store calls, over {@link #jobRow}: every
+	 * job is owned by {@link #OWNER}.
+	 */
+	private ExportJobRepository jobRepository() {
+		return (ExportJobRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[]{ExportJobRepository.class}, (proxy, method, args) -> switch (method.getName()) {
+					case "findByIdAndLeaseOwner" -> OWNER.equals(args[1]) ? Optional.of(jobRow) : Optional.empty();
+					case "updateCheckpoint" -> {
+						if (!OWNER.equals(args[1])) {
+							yield 0;
+						}
+						jobRow.setCheckpointPartNumber((Integer) args[2]);
+						jobRow.setCheckpointLastId((Long) args[3]);
+						yield 1;
+					}
+					case "resetCheckpoint" -> {
+						if (!OWNER.equals(args[1])) {
+							yield 0;
+						}
+						jobRow.setUploadId((String) args[2]);
+						jobRow.setCheckpointPartNumber(null);
+						jobRow.setCheckpointLastId(null);
+						yield 1;
+					}
+					default -> throw new UnsupportedOperationException(method.getName());
+				});
+	}
+
+	/**
+	 * The {@link ExportJobPartRepository} methods the store calls, over {@link #partRows}.
+	 */
+	private ExportJobPartRepository partRepository() {
+		return (ExportJobPartRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[]{ExportJobPartRepository.class}, (proxy, method, args) -> switch (method.getName()) {
+					case "saveAll" -> {
+						for (Object part : (Iterable<?>) args[0]) {
+							partRows.add((ExportJobPart) part);
+						}
+						yield args[0];
+					}
+					case "deleteByJobId" -> {
+						partRows.removeIf(part -> part.getJobId().equals(args[0]));
+						yield null;
+					}
+					default -> throw new UnsupportedOperationException(method.getName());
+				});
+	}
+}
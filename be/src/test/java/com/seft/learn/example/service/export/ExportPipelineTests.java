@@ -0,0 +1,53 @@
+package com.seft.learn.example.service.export;
+
+import com.seft.learn.example.service.PartBufferPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+/**
+ * Stopping an {@link ExportPipeline} whose consumer is blocked downstream on an
+ * exhausted {@link PartBufferPool}, which has no timeout of its own.
+ */
+class ExportPipelineTests {
+
+	private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+	@AfterEach
+	void shutDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	void abortWakesConsumerWaitingForUploadBuffers() throws Exception {
+		PartBufferPool pool = new PartBufferPool(1, 1024);
+		pool.acquire();
+		CompletableFuture<Throwable> consumerFailure = new CompletableFuture<>();
+		ExportSink sink = (data, offset, length) -> {
+			try {
+				pool.acquire();
+			} catch (InterruptedIOException e) {
+				consumerFailure.complete(e);
+				throw e;
+			}
+		};
+		ExportPipeline pipeline = new ExportPipeline(sink, executor, (p, rows) -> {}, 2, 16);
+		pipeline.write(new byte[16], 0, 16);
+		Thread.sleep(100);
+
+		assertTimeoutPreemptively(Duration.ofSeconds(5), pipeline::abort);
+		assertInstanceOf(InterruptedIOException.class, consumerFailure.get(5, TimeUnit.SECONDS));
+		// The interrupt does not leak into the next task of the pooled thread
+		assertFalse(executor.submit(() -> Thread.currentThread().isInterrupted()).get(5, TimeUnit.SECONDS));
+	}
+}
@@ -0,0 +1,111 @@
+package com.seft.learn.example.service.export;
+
+import com.seft.learn.example.entity.ExportJob.Compression;
+import com.seft.learn.example.entity.ExportJob.ExportFormat;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * How far {@link PartitionedExportRunner} lets partition spooling run ahead of the
+ * stitcher, over a query executor whose first partition is held back.
+ */
+class PartitionedExportRunnerTests {
+
+	private static final int WORKERS = 2;
+	private static final int PARTITIONS = 8;
+
+	// More threads than the runner may use, so only the runner limits how many partitions start
+	private final ExecutorService executor = Executors.newFixedThreadPool(PARTITIONS);
+	private final CountDownLatch firstPartitionReleased = new CountDownLatch(1);
+	private final CountDownLatch firstPartitionStarted = new CountDownLatch(1);
+	private final List<IdRange> started = new CopyOnWriteArrayList<>();
+	private final PartitionedExportRunner runner = new PartitionedExportRunner(new HeldBackExecutor(), executor);
+
+	@AfterEach
+	void shutDown() {
+		firstPartitionReleased.countDown();
+		executor.shutdownNow();
+	}
+
+	@Test
+	void slowPartitionHoldsBackTheRest() throws Exception {
+		ReflectionTestUtils.setField(runner, "workers", WORKERS);
+		ReflectionTestUtils.setField(runner, "partitionsPerWorker", PARTITIONS / WORKERS);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		List<IdRange> stitched = new CopyOnWriteArrayList<>();
+
+		CompletableFuture<Long> export = CompletableFuture.supplyAsync(() -> {
+			try {
+				return runner.export(new IdRange(1, 800), UserQuery.ALL, out::write, true,
+						new ExportMeters(new SimpleMeterRegistry()).stages(ExportFormat.CSV, Compression.NONE),
+						(partition, rows) -> stitched.add(partition));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+
+		assertTrue(firstPartitionStarted.await(5, TimeUnit.SECONDS));
+		// Every partition the runner may start while the first is stuck has time to start
+		Thread.sleep(200);
+		assertEquals(WORKERS + 1, started.size(), "partitions started ahead of the stitcher");
+		assertTrue(stitched.isEmpty());
+
+		firstPartitionReleased.countDown();
+		assertEquals(800L, export.get(10, TimeUnit.SECONDS));
+		assertEquals(PARTITIONS, stitched.size());
+		StringBuilder expected = new StringBuilder();
+		for (long id = 1; id <= 800; id++) {
+			expected.append(id).append('\n');
+		}
+		assertEquals(expected.toString(), out.toString(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Writes one line per id of the partition; the partition starting at id 1 waits for
+	 * {@link #firstPartitionReleased}.
+	 */
+	private final class HeldBackExecutor extends StreamingQueryExecutor {
+
+		HeldBackExecutor() {
+			super(null);
+		}
+
+		@Override
+		public long copyUsersCsv(OutputStream out, IdRange range, UserQuery query) {
+			started.add(range);
+			try {
+				if (range.minId() == 1) {
+					firstPartitionStarted.countDown();
+					firstPartitionReleased.await();
+				}
+				for (long id = range.minId(); id <= range.maxId(); id++) {
+					out.write((id + "\n").getBytes(StandardCharsets.UTF_8));
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException(e);
+			}
+			return range.maxId() - range.minId() + 1;
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package com.seft.learn.example.service.export;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The {@code COPY} and cursor paths of {@link StreamingQueryExecutor} must write the same
+ * bytes for the same rows, including {@code NULL}s and values that need quoting.
+ */
+class StreamingQueryExecutorTests {
+
+	private static final IdRange RANGE = new IdRange(1, 6);
+
+	private static EmbeddedPostgres postgres;
+	private static StreamingQueryExecutor executor;
+
+	@BeforeAll
+	static void start() throws IOException {
+		postgres = EmbeddedPostgres.start();
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(postgres.getPostgresDatabase());
+		// Every column but id nullable, so NULLs can be checked in each of them
+		jdbcTemplate.execute("CREATE TABLE users (id SERIAL PRIMARY KEY, email VARCHAR(255), "
+				+ "name VARCHAR(255), created_at TIMESTAMP)");
+		jdbcTemplate.update("INSERT INTO users (email, name, created_at) VALUES "
+				+ "('plain@example.com', 'Plain', '2024-01-02 03:04:05'), "
+				+ "(NULL, NULL, NULL), "
+				+ "('quote\"d@example.com', 'Comma, \"Quoted\"', '2024-02-03 04:05:06.789'), "
+				+ "('multi@example.com', E'Line\\nbreak', '2024-03-04 05:06:07.000123'), "
+				+ "('', '', '2024-04-05 06:07:08'), "
+				+ "('unicode@example.com', 'Zoë 日本', NULL)");
+		executor = new StreamingQueryExecutor(jdbcTemplate);
+	}
+
+	@AfterAll
+	static void stop() throws IOException {
+		postgres.close();
+	}
+
+	@Test
+	void copyWritesWhatTheCursorWrites() {
+		assertTrue(executor.supportsCopy());
+		assertSameBytes(UserQuery.ALL);
+	}
+
+	@Test
+	void copyWritesWhatTheCursorWritesForAProjection() {
+		assertSameBytes(new UserQuery(List.of(UserColumn.CREATED_AT, UserColumn.NAME), null, null));
+	}
+
+	@Test
+	void copyWritesWhatTheCursorWritesForACreatedRange() {
+		assertSameBytes(new UserQuery(UserColumn.ALL,
+				Instant.parse("2024-02-01T00:00:00Z"), Instant.parse("2024-04-01T00:00:00Z")));
+	}
+
+	private static void assertSameBytes(UserQuery query) {
+		ByteArrayOutputStream copied = new ByteArrayOutputStream();
+		long copiedRows = executor.copyUsersCsv(copied, RANGE, query);
+
+		CsvRowEncoder encoder = new CsvRowEncoder(query);
+		ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+		long[] streamedRows = {0};
+		executor.streamUsers(rs -> {
+			try {
+				encoder.encodeRow(rs);
+				encoder.drainTo(streamed::write);
+				streamedRows[0]++;
+			} catch (SQLException e) {
+				throw new IllegalStateException(e);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}, RANGE, query);
+
+		assertEquals(streamedRows[0], copiedRows);
+		assertArrayEquals(streamed.toByteArray(), copied.toByteArray(),
+				() -> "COPY:\n" + copied + "\ncursor:\n" + streamed);
+	}
+}
@@ -1,8 +1,9 @@
 import { useState, useEffect, useRef } from 'react';
 import {
   startExport,
-  getExportStatus,
+  subscribeExportEvents,
   getDownloadUrl,
+  type DownloadFile,
   type ExportJob,
   type ExportStatus
 } from '@/services/exportService';
@@ -11,44 +12,47 @@ export function UserExport() {
   const [job, setJob] = useState<ExportJob | null>(null);
   const [loading, setLoading] = useState(false);
   const [error, setError] = useState('');
-  const pollRef = useRef<number | null>(null);
+  const [downloadFiles, setDownloadFiles] = useState<DownloadFile[]>([]);
+  const unsubscribeRef = useRef<(() => void) | null>(null);
 
-  const stopPolling = () => {
-    if (pollRef.current) {
-      clearInterval(pollRef.current);
-      pollRef.current = null;
+  const stopWatching = () => {
+    if (unsubscribeRef.current) {
+      unsubscribeRef.current();
+      unsubscribeRef.current = null;
     }
   };
 
   useEffect(() => {
-    return () => stopPolling();
+    return () => stopWatching();
   }, []);
 
-  const pollStatus = (jobId: string) => {
-    pollRef.current = window.setInterval(async () => {
-      try {
-        const status = await getExportStatus(jobId);
-        setJob(status);
-        if (status.status === 'COMPLETED' || status.status === 'FAILED') {
-          stopPolling();
-        }
-      } catch (err) {
-        console.error('Poll error:', err);
-      }
-    }, 1000);
+  const watchStatus = (jobId: string) => {
+    unsubscribeRef.current = subscribeExportEvents(jobId, {
+      onStatus: setJob,
+      onProgress: ({ processedRecords, rowsPerSecond }) => {
+        setJob((current) => {
+          if (!current) return current;
+          const percent = current.totalRecords
+            ? Math.min(Math.floor(processedRecords * 100 / current.totalRecords), 99)
+            : current.progressPercent;
+          return { ...current, processedRecords, rowsPerSecond, progressPercent: percent };
+        });
+      },
+      onError: (event) => console.error('Export event stream error:', event),
+    });
   };
 
   const handleStartExport = async () => {
     setLoading(true);
     setError('');
     setJob(null);
-    stopPolling();
+    setDownloadFiles([]);
+    stopWatching();
 
     try {
       const res = await startExport();
-      const status = await getExportStatus(res.jobId);
-      setJob(status);
-      pollStatus(res.jobId);
+      // The first status event carries the job
+      watchStatus(res.jobId);
     } catch (err) {
       setError(err instanceof Error ? err.message : 'Unknown error');
     } finally {
@@ -59,7 +63,12 @@ export function UserExport() {
   const handleDownload = async () => {
     if (!job) return;
     try {
-      const { downloadUrl } = await getDownloadUrl(job.id);
+      const { downloadUrl, files } = await getDownloadUrl(job.id);
+      if (files.length > 1) {
+        // Split export: one link per file instead of opening the manifest
+        setDownloadFiles(files);
+        return;
+      }
       window.open(downloadUrl, '_blank');
     } catch (err) {
       setError(err instanceof Error ? err.message : 'Download failed');
@@ -146,7 +155,7 @@ export function UserExport() {
             <div style={{ marginBottom: '15px' }}>
               <div style={{ display: 'flex', justifyContent: 'space-between', marginBottom: '5px' }}>
                 <span>Progress</span>
-                <span>{job.processedRecords.toLocaleString()} / {(job.totalRecords || 0).toLocaleString()} ({job.progressPercent || 0}%)</span>
+                <span>{job.processedRecords.toLocaleString()} / {job.totalRecordsEstimated ? '~' : ''}{(job.totalRecords || 0).toLocaleString()} ({job.progressPercent || 0}%)</span>
               </div>
               <div style={{ height: '20px', backgroundColor: '#e9ecef', borderRadius: '10px', overflow: 'hidden' }}>
                 <div style={{
@@ -230,9 +239,22 @@ export function UserExport() {
                 fontSize: '14px'
               }}
             >
-              📥 Download CSV
+              📥 Download CSV{job.fileCount && job.fileCount > 1 ? ` (${job.fileCount} files)` : ''}
             </button>
           )}
+
+          {job.status === 'COMPLETED' && downloadFiles.length > 0 && (
+            <ul style={{ marginTop: '10px', paddingLeft: '20px', fontSize: '13px' }}>
+              {downloadFiles.map((file) => (
+                <li key={file.s3Key}>
+                  <a href={file.url} target="_blank" rel="noreferrer">
+                    {file.s3Key.substring(file.s3Key.lastIndexOf('/') + 1)}
+                  </a>
+                  {' '}({file.rows.toLocaleString()} rows)
+                </li>
+              ))}
+            </ul>
+          )}
         </div>
       )}
     </div>
@@ -4,13 +4,30 @@ const API_BASE = '/exports';
 
 export type ExportStatus = 'PENDING' | 'RUNNING' | 'COMPLETED' | 'FAILED';
 
+export type ExportQueryMode = 'CURSOR' | 'CHUNKED_CURSOR' | 'PARALLEL_CURSOR' | 'COPY' | 'PARALLEL_COPY';
+
+export type ExportType = 'FULL' | 'DELTA';
+
+export type ExportCompression = 'NONE' | 'GZIP' | 'ZSTD' | 'LZ4';
+
 export interface ExportJob {
   id: string;
   status: ExportStatus;
+  exportType: ExportType | null;
+  baseJobId: string | null;
+  format: string | null;
+  compression: ExportCompression | null;
+  queryMode: ExportQueryMode | null;
+  /** Comma-separated exported columns; null when every column is exported */
+  columns: string | null;
   totalRecords: number | null;
+  /** totalRecords is the planner's estimate until the exact count replaces it */
+  totalRecordsEstimated: boolean;
   processedRecords: number;
   progressPercent: number;
+  /** The exported object, or the manifest.json of an export split into fileCount files */
   s3Key: string | null;
+  fileCount: number | null;
   errorMessage: string | null;
   createdAt: string;
   startedAt: string | null;
@@ -21,23 +38,117 @@ export interface ExportJob {
   uncompressedSizeBytes: number | null;
   uncompressedSizeFormatted: string | null;
   compressionPercent: number | null;
+  compressionRatio: number | null;
   rowsPerSecond: number | null;
   durationMs: number | null;
   durationFormatted: string | null;
 }
 
+export interface ExportManifest {
+  jobId: string;
+  type: ExportType;
+  s3Key: string;
+  baseJobId: string | null;
+  baseS3Key: string | null;
+  since: string | null;
+  firstId: number | null;
+  lastId: number | null;
+  watermarkCreatedAt: string | null;
+  columns: string;
+  idFrom: number | null;
+  idTo: number | null;
+  createdFrom: string | null;
+  createdTo: string | null;
+  /** Objects holding the rows, in id order; each is a complete CSV with its own header */
+  files: ExportManifestFile[];
+}
+
+export interface ExportManifestFile {
+  s3Key: string;
+  rows: number;
+  sizeBytes: number;
+  minId: number | null;
+  maxId: number | null;
+}
+
 export interface StartExportResponse {
   jobId: string;
+  /** An earlier job with the same parameters, possibly still running */
+  reused: boolean;
   message: string;
   statusUrl: string;
+  manifest?: ExportManifest;
+}
+
+/** `progress` event of `GET /exports/{jobId}/events` */
+export interface ExportProgressEvent {
+  jobId: string;
+  processedRecords: number;
+  rowsPerSecond: number;
+}
+
+export interface ExportEventHandlers {
+  /** Full job state; sent on connect and on every state change */
+  onStatus: (job: ExportJob) => void;
+  onProgress: (progress: ExportProgressEvent) => void;
+  onError?: (event: Event) => void;
 }
 
 export interface DownloadUrlResponse {
+  /** The export's object, or its manifest.json when it is split into files */
   downloadUrl: string;
+  manifestUrl: string | null;
+  files: DownloadFile[];
+}
+
+export interface DownloadFile {
+  s3Key: string;
+  url: string;
+  rows: number;
+  sizeBytes: number;
+}
+
+export type ExportFormat = 'csv' | 'parquet';
+
+export interface StartExportOptions {
+  format?: ExportFormat;
+  /** Defaults to gzip for CSV; Parquet only accepts none */
+  compression?: Lowercase<ExportCompression>;
+  /** Base export id or ISO-8601 timestamp for a delta export */
+  since?: string;
+  /** Comma-separated columns, e.g. `id,email`; all columns when omitted */
+  columns?: string;
+  /** ISO-8601 bounds on created_at: from inclusive, to exclusive */
+  createdFrom?: string;
+  createdTo?: string;
+  idFrom?: number;
+  idTo?: number;
 }
 
-export async function startExport(): Promise<StartExportResponse> {
-  const { data } = await apiClient.post<StartExportResponse>(`${API_BASE}/users`);
+export async function startExport(options: StartExportOptions = {}): Promise<StartExportResponse> {
+  const { data } = await apiClient.post<StartExportResponse>(`${API_BASE}/users`, null, {
+    params: options,
+  });
+  return data;
+}
+
+export type DirectExportOptions = Omit<StartExportOptions, 'format' | 'since'>;
+
+/**
+ * URL of a CSV download streamed straight from the database. The server answers 422
+ * when the export is too large for it; use {@link startExport} then.
+ */
+export function directExportUrl(options: DirectExportOptions = {}): string {
+  const params = new URLSearchParams();
+  Object.entries(options).forEach(([key, value]) => {
+    if (value !== undefined) params.set(key, String(value));
+  });
+  const query = params.toString();
+  return `${apiClient.defaults.baseURL}${API_BASE}/users/stream${query ? `?${query}` : ''}`;
+}
+
+export async function getExportManifest(jobId: string): Promise<ExportManifest> {
+  const { data } = await apiClient.get<ExportManifest>(`${API_BASE}/${jobId}/manifest`);
   return data;
 }
 
@@ -46,7 +157,32 @@ export async function getExportStatus(jobId: string): Promise<ExportJob> {
   return data;
 }
 
+/**
+ * Subscribes to the job's server-sent events. The server closes the stream once the
+ * job is COMPLETED or FAILED; call the returned function to unsubscribe earlier.
+ */
+export function subscribeExportEvents(jobId: string, handlers: ExportEventHandlers): () => void {
+  const source = new EventSource(`${apiClient.defaults.baseURL}${API_BASE}/${jobId}/events`);
+  source.addEventListener('status', (event) => {
+    const job = JSON.parse((event as MessageEvent<string>).data) as ExportJob;
+    handlers.onStatus(job);
+    if (job.status === 'COMPLETED' || job.status === 'FAILED') {
+      source.close();
+    }
+  });
+  source.addEventListener('progress', (event) => {
+    handlers.onProgress(JSON.parse((event as MessageEvent<string>).data) as ExportProgressEvent);
+  });
+  source.onerror = (event) => handlers.onError?.(event);
+  return () => source.close();
+}
+
 export async function getDownloadUrl(jobId: string): Promise<DownloadUrlResponse> {
   const { data } = await apiClient.get<DownloadUrlResponse>(`${API_BASE}/${jobId}/download-url`);
   return data;
 }
+
+export async function retryExport(jobId: string): Promise<StartExportResponse> {
+  const { data } = await apiClient.post<StartExportResponse>(`${API_BASE}/${jobId}/retry`);
+  return data;
+}